@@ -0,0 +1,55 @@
+package kmp.bench;
+
+import java.util.Random;
+
+/**
+ * Deterministic text and pattern generators shared by the benchmarks.
+ */
+final class BenchmarkInputs {
+    private static final long SEED = 42;
+
+    private BenchmarkInputs() {
+    }
+
+    // random text over the first alphabetSize letters
+    static String randomText(int length, int alphabetSize) {
+        Random random = new Random(SEED);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(alphabetSize)));
+        }
+        return sb.toString();
+    }
+
+    // a pattern copied from the middle of the text, so it occurs at least once
+    static String patternFrom(String text, int length) {
+        int start = Math.max(0, (text.length() - length) / 2);
+        return text.substring(start, Math.min(text.length(), start + length));
+    }
+
+    // AAAA...A text with an AAA...AB pattern that never occurs: every alignment is a
+    // near-miss, the classic quadratic case for naive search
+    static String adversarialText(int length) {
+        return "A".repeat(length);
+    }
+
+    static String adversarialPattern(int length) {
+        return "A".repeat(length - 1) + "B";
+    }
+
+    // textbook O(n * m) search used as a baseline
+    static int naiveSearch(String text, String pattern) {
+        int n = text.length();
+        int m = pattern.length();
+        for (int i = 0; i + m <= n; i++) {
+            int j = 0;
+            while (j < m && text.charAt(i + j) == pattern.charAt(j)) {
+                j++;
+            }
+            if (j == m) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,56 @@
+package kmp.bench;
+
+import kmp.Engine;
+import kmp.KMPAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of preprocessing: the LPS array alone and a full compile with the automaton table.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LpsBenchmark {
+    @Param({"8", "64", "1024"})
+    int patternLength;
+
+    @Param({"2", "26"})
+    int alphabetSize;
+
+    @Param({"random", "adversarial"})
+    String input;
+
+    String pattern;
+
+    @Setup
+    public void setup() {
+        pattern = input.equals("adversarial")
+                ? BenchmarkInputs.adversarialPattern(patternLength)
+                : BenchmarkInputs.randomText(patternLength, alphabetSize);
+    }
+
+    @Benchmark
+    public int[] computeLPSArray() {
+        return KMPAlgorithm.computeLPSArray(pattern);
+    }
+
+    @Benchmark
+    public Object compileAutomaton() {
+        return KMPAlgorithm.compile(pattern, Engine.AUTOMATON);
+    }
+}
@@ -0,0 +1,153 @@
+package kmp.bench;
+
+import kmp.CompiledPattern;
+import kmp.Engine;
+import kmp.KMPAlgorithm;
+import kmp.MatchBuffer;
+import kmp.MatchOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * First-match and all-matches search across text sizes, pattern lengths, alphabets
+ * and the adversarial AAAA...AB input, with String.indexOf and naive search as baselines.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+    @Param({"1000", "1000000"})
+    int textSize;
+
+    @Param({"8", "64"})
+    int patternLength;
+
+    @Param({"4", "26"})
+    int alphabetSize;
+
+    @Param({"random", "adversarial"})
+    String input;
+
+    String text;
+    String pattern;
+    CompiledPattern lps;
+    CompiledPattern automaton;
+    CompiledPattern prefiltered;
+    CompiledPattern horspool;
+    CompiledPattern auto;
+    CompiledPattern offHeap;
+    byte[] bytes;
+    MatchBuffer buffer;
+
+    @Setup
+    public void setup() {
+        if (input.equals("adversarial")) {
+            text = BenchmarkInputs.adversarialText(textSize);
+            pattern = BenchmarkInputs.adversarialPattern(patternLength);
+        } else {
+            text = BenchmarkInputs.randomText(textSize, alphabetSize);
+            pattern = BenchmarkInputs.patternFrom(text, patternLength);
+        }
+        lps = KMPAlgorithm.compile(pattern, Engine.LPS);
+        automaton = KMPAlgorithm.compile(pattern, Engine.AUTOMATON);
+        prefiltered = KMPAlgorithm.compile(pattern, MatchOptions.DEFAULT.withPrefilter(true));
+        horspool = KMPAlgorithm.compile(pattern, Engine.HORSPOOL);
+        auto = KMPAlgorithm.compile(pattern, Engine.AUTO);
+        offHeap = KMPAlgorithm.compile(pattern, MatchOptions.DEFAULT.withOffHeap(true));
+        bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        buffer = new MatchBuffer();
+    }
+
+    @Benchmark
+    public int search() {
+        return KMPAlgorithm.search(text, pattern);
+    }
+
+    @Benchmark
+    public int compiledIndexOf() {
+        return lps.indexOf(text);
+    }
+
+    @Benchmark
+    public int automatonIndexOf() {
+        return automaton.indexOf(text);
+    }
+
+    @Benchmark
+    public int prefilteredIndexOf() {
+        return prefiltered.indexOf(text);
+    }
+
+    @Benchmark
+    public int horspoolIndexOf() {
+        return horspool.indexOf(text);
+    }
+
+    @Benchmark
+    public int autoIndexOf() {
+        return auto.indexOf(text);
+    }
+
+    // lps engine reading its table from a direct buffer, compare with compiledIndexOf
+    @Benchmark
+    public int offHeapIndexOf() {
+        return offHeap.indexOf(text);
+    }
+
+    @Benchmark
+    public int bytesIndexOf() {
+        return lps.indexOf(bytes, 0, bytes.length);
+    }
+
+    // SIMD when run from the vector profile's jar with add-modules jdk.incubator.vector
+    @Benchmark
+    public int prefilteredBytesIndexOf() {
+        return prefiltered.indexOf(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public int stringIndexOf() {
+        return text.indexOf(pattern);
+    }
+
+    @Benchmark
+    public int naiveSearch() {
+        return BenchmarkInputs.naiveSearch(text, pattern);
+    }
+
+    @Benchmark
+    public int[] searchAll() {
+        return KMPAlgorithm.searchAll(text, pattern);
+    }
+
+    @Benchmark
+    public int compiledFindAllIntoBuffer() {
+        buffer.clear();
+        return lps.findAll(text, buffer);
+    }
+
+    @Benchmark
+    public int automatonCount() {
+        return automaton.count(text);
+    }
+
+    @Benchmark
+    public int[] findAllParallel() {
+        return lps.findAllParallel(text);
+    }
+}
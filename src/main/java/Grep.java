@@ -0,0 +1,85 @@
+import kmp.DirectoryScanner;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * Command-line fixed-string search over a directory tree, built on kmp.DirectoryScanner.
+ *
+ * Usage: java Grep [-j workers] [--map-threshold bytes] [--stats] PATTERN [PATH]
+ *
+ * Prints path:line:column:text for every matching line of every text file under PATH
+ * (default "."). Like grep, it exits with 0 when a line matched, 1 when none did and 2 on errors.
+ */
+public class Grep {
+
+    public static void main(String[] args) throws Exception {
+        int workers = Runtime.getRuntime().availableProcessors();
+        long mapThreshold = DirectoryScanner.DEFAULT_MAP_THRESHOLD;
+        boolean stats = false;
+        int arg = 0;
+        try {
+            while (arg < args.length && args[arg].startsWith("-") && args[arg].length() > 1) {
+                String option = args[arg++];
+                if (option.equals("--")) {
+                    break;
+                }
+                switch (option) {
+                    case "-j":
+                        workers = Integer.parseInt(args[arg++]);
+                        break;
+                    case "--map-threshold":
+                        mapThreshold = Long.parseLong(args[arg++]);
+                        break;
+                    case "--stats":
+                        stats = true;
+                        break;
+                    default:
+                        usage("Unknown option " + option);
+                        return;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            usage("Missing or invalid option value");
+            return;
+        }
+        if (arg >= args.length || args.length - arg > 2) {
+            usage("Expected PATTERN [PATH]");
+            return;
+        }
+        String pattern = args[arg];
+        Path root = Paths.get(arg + 1 < args.length ? args[arg + 1] : ".");
+
+        DirectoryScanner.Summary summary;
+        try {
+            DirectoryScanner scanner = new DirectoryScanner(pattern, workers, mapThreshold);
+            Writer out = new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8);
+            summary = scanner.scan(root, out);
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+            return;
+        }
+
+        for (String error : summary.errors()) {
+            System.err.println("grep: " + error);
+        }
+        if (stats) {
+            double seconds = summary.elapsedNanos() / 1e9;
+            System.err.println("Files: " + summary.files() + " (" + summary.binaryFiles() + " binary skipped)");
+            System.err.println("Bytes: " + summary.bytes());
+            System.err.println("Matching lines: " + summary.matchingLines());
+            System.err.println("Elapsed: " + String.format("%.3f", seconds * 1000) + " ms");
+            System.err.println("Throughput: " + String.format("%.0f", seconds > 0 ? summary.files() / seconds : 0)
+                    + " files/sec, " + String.format("%.1f", seconds > 0 ? summary.bytes() / seconds / (1 << 20) : 0)
+                    + " MB/sec");
+        }
+        System.exit(!summary.errors().isEmpty() ? 2 : summary.matchingLines() > 0 ? 0 : 1);
+    }
+
+    private static void usage(String message) {
+        System.err.println("grep: " + message);
+        System.err.println("Usage: java Grep [-j workers] [--map-threshold bytes] [--stats] PATTERN [PATH]");
+        System.exit(2);
+    }
+}
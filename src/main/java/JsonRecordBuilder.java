@@ -0,0 +1,79 @@
+/**
+ * Builds one flat JSON object on a single line, the output counterpart of {@link JsonRecordReader}.
+ * Strings are escaped per RFC 8259, so any text round-trips through the reader.
+ */
+final class JsonRecordBuilder {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder json = new StringBuilder("{");
+
+    JsonRecordBuilder field(String name, String value) {
+        key(name);
+        if (value == null) {
+            json.append("null");
+        } else {
+            quote(value);
+        }
+        return this;
+    }
+
+    JsonRecordBuilder field(String name, long value) {
+        key(name);
+        json.append(value);
+        return this;
+    }
+
+    JsonRecordBuilder field(String name, boolean value) {
+        key(name);
+        json.append(value);
+        return this;
+    }
+
+    JsonRecordBuilder field(String name, int[] values) {
+        key(name);
+        json.append('[');
+        for (int k = 0; k < values.length; k++) {
+            if (k > 0) {
+                json.append(',');
+            }
+            json.append(values[k]);
+        }
+        json.append(']');
+        return this;
+    }
+
+    // the finished object, without a trailing newline
+    @Override
+    public String toString() {
+        return json + "}";
+    }
+
+    private void key(String name) {
+        if (json.length() > 1) {
+            json.append(',');
+        }
+        quote(name);
+        json.append(':');
+    }
+
+    private void quote(String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,192 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Streaming reader of flat JSON objects, one record at a time.
+ *
+ * Accepts JSON Lines as well as pretty-printed objects, any whitespace between records.
+ * Values must be strings, numbers, true, false or null; strings are unescaped, including
+ * \\uXXXX escapes and surrogate pairs, and other values are returned as their literal text,
+ * with null as a Java null. Nested objects and arrays are rejected. Only one record is held
+ * in memory, so inputs of any size can be read.
+ */
+final class JsonRecordReader implements Closeable {
+    private static final int BUFFER_SIZE = 8192;
+    private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder value = new StringBuilder();
+    private int position;
+    private int limit;
+    private long line = 1;
+
+    JsonRecordReader(Reader in) {
+        this.in = in;
+    }
+
+    // returns the next record with keys in input order, or null at end of input
+    Map<String, String> next() throws IOException {
+        int c = skipWhitespace();
+        if (c < 0) {
+            return null;
+        }
+        if (c != '{') {
+            throw error("expected '{' but found " + describe(c));
+        }
+        Map<String, String> record = new LinkedHashMap<>();
+        c = skipWhitespace();
+        if (c == '}') {
+            return record;
+        }
+        while (true) {
+            if (c != '"') {
+                throw error("expected a field name but found " + describe(c));
+            }
+            String key = readString();
+            c = skipWhitespace();
+            if (c != ':') {
+                throw error("expected ':' but found " + describe(c));
+            }
+            record.put(key, readValue(skipWhitespace()));
+            c = skipWhitespace();
+            if (c == '}') {
+                return record;
+            }
+            if (c != ',') {
+                throw error("expected ',' or '}' but found " + describe(c));
+            }
+            c = skipWhitespace();
+        }
+    }
+
+    // line of the last character read, starting at 1
+    long line() {
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String readValue(int c) throws IOException {
+        if (c == '"') {
+            return readString();
+        }
+        if (c == '{' || c == '[') {
+            throw error("nested values are not supported");
+        }
+        value.setLength(0);
+        while (c >= 0 && c != ',' && c != '}' && !isWhitespace(c)) {
+            value.append((char) c);
+            c = read();
+        }
+        if (c >= 0) {
+            // push the terminator back for the caller
+            position--;
+            if (c == '\n') {
+                line--;
+            }
+        }
+        String literal = value.toString();
+        if (literal.equals("null")) {
+            return null;
+        }
+        if (literal.equals("true") || literal.equals("false") || isNumber(literal)) {
+            return literal;
+        }
+        throw error("invalid value " + (literal.isEmpty() ? describe(c) : "'" + literal + "'"));
+    }
+
+    // reads up to the closing quote; the opening quote has been consumed
+    private String readString() throws IOException {
+        value.setLength(0);
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                throw error("unterminated string");
+            }
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c < 0x20) {
+                throw error("unescaped control character in string");
+            }
+            if (c != '\\') {
+                value.append((char) c);
+                continue;
+            }
+            int escape = read();
+            switch (escape) {
+                case '"': value.append('"'); break;
+                case '\\': value.append('\\'); break;
+                case '/': value.append('/'); break;
+                case 'b': value.append('\b'); break;
+                case 'f': value.append('\f'); break;
+                case 'n': value.append('\n'); break;
+                case 'r': value.append('\r'); break;
+                case 't': value.append('\t'); break;
+                case 'u': value.append(readHex()); break;
+                default: throw error("invalid escape " + describe(escape));
+            }
+        }
+    }
+
+    private char readHex() throws IOException {
+        int code = 0;
+        for (int k = 0; k < 4; k++) {
+            int c = read();
+            int digit = Character.digit(c < 0 ? -1 : (char) c, 16);
+            if (digit < 0) {
+                throw error("invalid \\u escape");
+            }
+            code = code << 4 | digit;
+        }
+        return (char) code;
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c = read();
+        while (isWhitespace(c)) {
+            c = read();
+        }
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, BUFFER_SIZE);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        char c = buffer[position++];
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static boolean isNumber(String literal) {
+        return NUMBER.matcher(literal).matches();
+    }
+
+    private static String describe(int c) {
+        return c < 0 ? "end of input" : "'" + (char) c + "'";
+    }
+
+    private IOException error(String message) {
+        return new IOException("line " + line + ": " + message);
+    }
+}
@@ -1,164 +1,280 @@
+import kmp.BatchSearch;
+import kmp.CompiledPattern;
 import kmp.KMPAlgorithm;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
-
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Runs every test case in data/input and writes the results to data/output/results.jsonl.
+ *
+ * Input files (.json or .jsonl) may hold any number of objects, pretty-printed or one per line.
+ * Records are streamed through BatchSearch.forEachOrdered: the reader stays at most IN_FLIGHT
+ * records ahead of the writer, matching runs on a worker pool and results are written in input order.
+ *
+ * Usage: java TestRunner [--verbose]
+ *
+ * Only failures and the summary are printed; --verbose also prints one line per test.
+ */
 public class TestRunner {
 
     private static final String INPUT_DIR = "data/input/";
-    private static final String OUTPUT_DIR = "data/output/";
+    private static final String OUTPUT_FILE = "data/output/results.jsonl";
+    private static final int IN_FLIGHT = 4 * Runtime.getRuntime().availableProcessors();
 
     private static class TestInput {
-        String testId;
-        String text;
-        String pattern;
-        String description;
-
-        public TestInput(String json) {
-            this.testId = extractValue(json, "test_id");
-            this.text = extractValue(json, "text");
-            this.pattern = extractValue(json, "pattern");
-            this.description = extractValue(json, "description");
+        final String source;
+        final String testId;
+        final String text;
+        final String pattern;
+        final String description;
+
+        TestInput(String source, Map<String, String> record) {
+            this.source = source;
+            this.testId = valueOf(record, "test_id");
+            this.text = valueOf(record, "text");
+            this.pattern = valueOf(record, "pattern");
+            this.description = valueOf(record, "description");
         }
 
-        private String extractValue(String json, String key) {
-            String searchKey = "\"" + key + "\"";
-            int keyIndex = json.indexOf(searchKey);
-            if (keyIndex == -1) return "";
-
-            int colonIndex = json.indexOf(":", keyIndex);
-            int startQuote = json.indexOf("\"", colonIndex);
-            int endQuote = json.indexOf("\"", startQuote + 1);
-
-            return json.substring(startQuote + 1, endQuote);
+        private static String valueOf(Map<String, String> record, String key) {
+            String value = record.get(key);
+            return value == null ? "" : value;
         }
     }
 
-    private static String formatOutputJSON(TestInput input, int index, int[] lps, long executionTime) {
-        StringBuilder json = new StringBuilder();
-        json.append("{\n");
-        json.append("  \"test_id\": \"").append(input.testId).append("\",\n");
-        json.append("  \"text\": \"").append(escapeJSON(input.text)).append("\",\n");
-        json.append("  \"pattern\": \"").append(escapeJSON(input.pattern)).append("\",\n");
-        json.append("  \"found\": ").append(index != -1).append(",\n");
-        json.append("  \"index\": ").append(index).append(",\n");
-        json.append("  \"execution_time_ms\": ").append(executionTime).append(",\n");
-        json.append("  \"text_length\": ").append(input.text.length()).append(",\n");
-        json.append("  \"pattern_length\": ").append(input.pattern.length()).append(",\n");
-        json.append("  \"lps_array\": [");
-
-        for (int i = 0; i < lps.length; i++) {
-            json.append(lps[i]);
-            if (i < lps.length - 1) {
-                json.append(", ");
-            }
+    private static class TestResult {
+        final TestInput input;
+        final String json;
+        final int index;
+        final long executionTime;
+        final Exception error;
+
+        TestResult(TestInput input, String json, int index, long executionTime, Exception error) {
+            this.input = input;
+            this.json = json;
+            this.index = index;
+            this.executionTime = executionTime;
+            this.error = error;
         }
-
-        json.append("],\n");
-        json.append("  \"description\": \"").append(escapeJSON(input.description)).append("\"\n");
-        json.append("}\n");
-
-        return json.toString();
-    }
-
-    private static String escapeJSON(String str) {
-        return str.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
     }
 
-    private static void processTestCase(File inputFile) {
+    // runs on a worker thread
+    private static TestResult runTestCase(TestInput input) {
         try {
-            String jsonContent = new String(Files.readAllBytes(inputFile.toPath()));
-            TestInput input = new TestInput(jsonContent);
-
-            System.out.println("\n" + "=".repeat(80));
-            System.out.println("Processing: " + inputFile.getName());
-            System.out.println("Test ID: " + input.testId);
-            System.out.println("Description: " + input.description);
-            System.out.println("-".repeat(80));
+            CompiledPattern compiled = KMPAlgorithm.compile(input.pattern);
 
             long startTime = System.nanoTime();
-            int index = KMPAlgorithm.search(input.text, input.pattern);
-            long endTime = System.nanoTime();
-            long executionTime = endTime - startTime;
-
-            int[] lps = KMPAlgorithm.computeLPSArray(input.pattern);
-
-            System.out.println("Text: \"" + input.text + "\"");
-            System.out.println("Pattern: \"" + input.pattern + "\"");
-            System.out.println("Result: " + (index != -1 ? "Found at index " + index : "Not found"));
-            System.out.print("LPS Array: [");
-            for (int i = 0; i < lps.length; i++) {
-                System.out.print(lps[i]);
-                if (i < lps.length - 1) System.out.print(", ");
-            }
-            System.out.println("]");
-            System.out.println("Execution Time: " + executionTime + " ns (" +
-                    String.format("%.3f", executionTime / 1000.0) + " μs)");
+            int index = compiled.indexOf(input.text);
+            long executionTime = System.nanoTime() - startTime;
+
+            String json = new JsonRecordBuilder()
+                    .field("test_id", input.testId)
+                    .field("text", input.text)
+                    .field("pattern", input.pattern)
+                    .field("found", index != -1)
+                    .field("index", index)
+                    .field("execution_time_ns", executionTime)
+                    .field("text_length", input.text.length())
+                    .field("pattern_length", input.pattern.length())
+                    .field("lps_array", compiled.lps())
+                    .field("description", input.description)
+                    .toString();
+            return new TestResult(input, json, index, executionTime, null);
+        } catch (RuntimeException e) {
+            return new TestResult(input, null, -1, 0, e);
+        }
+    }
 
-            String outputJSON = formatOutputJSON(input, index, lps, executionTime);
+    // lazily streams the records of all input files, one file open at a time.
+    // a malformed file is reported and the rest of it skipped
+    private static class RecordIterator implements Iterator<TestInput> {
+        private final Iterator<Path> files;
+        private JsonRecordReader reader;
+        private String source;
+        private TestInput next;
+        int malformedFiles;
+
+        RecordIterator(List<Path> files) {
+            this.files = files.iterator();
+        }
 
-            String outputFileName = inputFile.getName().replace(".json", "_output.json");
-            File outputFile = new File(OUTPUT_DIR + outputFileName);
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (reader == null) {
+                    if (!files.hasNext()) {
+                        return false;
+                    }
+                    Path file = files.next();
+                    source = file.getFileName().toString();
+                    try {
+                        reader = new JsonRecordReader(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+                    } catch (IOException e) {
+                        System.err.println("Error opening " + source + ": " + e.getMessage());
+                        malformedFiles++;
+                        continue;
+                    }
+                }
+                try {
+                    Map<String, String> record = reader.next();
+                    if (record != null) {
+                        next = new TestInput(source, record);
+                    } else {
+                        closeReader();
+                    }
+                } catch (IOException e) {
+                    System.err.println("Error reading " + source + ": " + e.getMessage());
+                    malformedFiles++;
+                    closeReader();
+                }
+            }
+            return true;
+        }
 
-            outputFile.getParentFile().mkdirs();
+        @Override
+        public TestInput next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            TestInput result = next;
+            next = null;
+            return result;
+        }
 
-            Files.write(outputFile.toPath(), outputJSON.getBytes());
-            System.out.println("Output written to: " + outputFile.getPath());
+        void closeReader() {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing " + source + ": " + e.getMessage());
+                }
+                reader = null;
+            }
+        }
+    }
 
-        } catch (IOException e) {
-            System.err.println("Error processing " + inputFile.getName() + ": " + e.getMessage());
-            e.printStackTrace();
+    private static List<Path> listInputFiles(Path inputDir) throws IOException {
+        try (Stream<Path> entries = Files.list(inputDir)) {
+            List<Path> files = new ArrayList<>();
+            entries.filter(p -> {
+                String name = p.getFileName().toString();
+                return Files.isRegularFile(p) && (name.endsWith(".json") || name.endsWith(".jsonl"));
+            }).forEach(files::add);
+            files.sort(Comparator.comparing(p -> p.getFileName().toString()));
+            return files;
         }
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        boolean verbose = false;
+        for (String arg : args) {
+            if (arg.equals("--verbose")) {
+                verbose = true;
+            } else {
+                System.err.println("Unknown option " + arg);
+                System.err.println("Usage: java TestRunner [--verbose]");
+                return;
+            }
+        }
+
         System.out.println("KMP Algorithm Test Runner");
-        System.out.println("=" .repeat(80));
+        System.out.println("=".repeat(80));
 
-        File inputDir = new File(INPUT_DIR);
+        Path inputDir = Paths.get(INPUT_DIR);
 
-        if (!inputDir.exists() || !inputDir.isDirectory()) {
+        if (!Files.isDirectory(inputDir)) {
             System.err.println("Error: Input directory not found: " + INPUT_DIR);
             return;
         }
 
-        File[] inputFiles = inputDir.listFiles((dir, name) -> name.endsWith(".json"));
+        List<Path> inputFiles = listInputFiles(inputDir);
 
-        if (inputFiles == null || inputFiles.length == 0) {
+        if (inputFiles.isEmpty()) {
             System.err.println("No test files found in " + INPUT_DIR);
             return;
         }
 
-        Arrays.sort(inputFiles, Comparator.comparing(File::getName));
+        System.out.println("Found " + inputFiles.size() + " input file(s)");
 
-        System.out.println("Found " + inputFiles.length + " test case(s)");
+        Path outputFile = Paths.get(OUTPUT_FILE);
+        Files.createDirectories(outputFile.getParent());
 
-        int passed = 0;
-        int failed = 0;
+        RecordIterator records = new RecordIterator(inputFiles);
+        Iterator<Callable<TestResult>> tasks = new Iterator<Callable<TestResult>>() {
+            @Override
+            public boolean hasNext() {
+                return records.hasNext();
+            }
 
-        for (File inputFile : inputFiles) {
-            try {
-                processTestCase(inputFile);
-                passed++;
-            } catch (Exception e) {
-                System.err.println("Failed to process: " + inputFile.getName());
-                e.printStackTrace();
-                failed++;
+            @Override
+            public Callable<TestResult> next() {
+                TestInput input = records.next();
+                return () -> runTestCase(input);
             }
+        };
+        ExecutorService executor = BatchSearch.newDefaultExecutor();
+        int[] passed = new int[1];
+        int[] failed = new int[1];
+        long startTime = System.nanoTime();
+
+        try (BufferedWriter writer = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8)) {
+            boolean printEach = verbose;
+            BatchSearch.forEachOrdered(executor, IN_FLIGHT, tasks, result -> {
+                try {
+                    if (write(result, writer, printEach)) {
+                        passed[0]++;
+                    } else {
+                        failed[0]++;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            records.closeReader();
+            executor.shutdownNow();
         }
 
+        long elapsed = System.nanoTime() - startTime;
+        int total = passed[0] + failed[0];
+        double seconds = elapsed / 1e9;
+
         System.out.println("\n" + "=".repeat(80));
         System.out.println("TEST SUMMARY");
         System.out.println("=".repeat(80));
-        System.out.println("Total tests: " + inputFiles.length);
-        System.out.println("Passed: " + passed);
-        System.out.println("Failed: " + failed);
-        System.out.println("\nAll output files written to: " + OUTPUT_DIR);
+        System.out.println("Total tests: " + total);
+        System.out.println("Passed: " + passed[0]);
+        System.out.println("Failed: " + failed[0]);
+        if (records.malformedFiles > 0) {
+            System.out.println("Unreadable files: " + records.malformedFiles);
+        }
+        System.out.println("Elapsed: " + String.format("%.3f", seconds * 1000) + " ms");
+        System.out.println("Throughput: " + String.format("%.0f", seconds > 0 ? total / seconds : 0) + " jobs/sec");
+        System.out.println("\nResults written to: " + OUTPUT_FILE);
         System.out.println("=".repeat(80));
     }
-}
\ No newline at end of file
+
+    // runs on the main thread in input order; returns whether the test passed
+    private static boolean write(TestResult result, BufferedWriter writer, boolean verbose) throws IOException {
+        TestInput input = result.input;
+        if (result.error != null) {
+            System.err.println("Failed to process " + input.testId + " (" + input.source + "): " + result.error);
+            return false;
+        }
+        writer.write(result.json);
+        writer.write('\n');
+        if (verbose) {
+            System.out.println(input.testId + " [" + input.source + "]: "
+                    + (result.index != -1 ? "found at index " + result.index : "not found")
+                    + ", " + result.executionTime + " ns");
+        }
+        return true;
+    }
+}
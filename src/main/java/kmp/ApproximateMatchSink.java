@@ -0,0 +1,11 @@
+package kmp;
+
+/**
+ * Receives (offset, distance) pairs from an {@link ApproximateMatcher}.
+ * The offset is where the match starts for Hamming distance and where it ends
+ * (exclusive) for edit distance; distance is the number of mismatches or edits.
+ */
+@FunctionalInterface
+public interface ApproximateMatchSink {
+    void onMatch(int offset, int distance);
+}
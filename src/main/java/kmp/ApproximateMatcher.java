@@ -0,0 +1,237 @@
+package kmp;
+
+/**
+ * Finds substrings within a small distance k of a pattern, next to the exact engines.
+ *
+ * Two distances are supported:
+ * <pre>
+ *   hamming       k mismatches, same length as the pattern; reports each window start
+ *   edit distance k insertions, deletions or substitutions; reports each end position
+ * </pre>
+ * An edit-distance match has no single start (the same end can be reached from several
+ * starts with the same cost), so it is reported by its end, exclusive, with the smallest
+ * distance of any substring ending there. Neighbouring ends usually all match.
+ *
+ * Patterns up to 64 chars run bit-parallel over one long per state: Wu-Manber Shift-And
+ * with k + 1 state words for Hamming, O(n * k), and Myers' bit-vector algorithm for edit
+ * distance, O(n) whatever k is. Longer patterns fall back to a direct window compare that
+ * stops after k + 1 mismatches, and to the Sellers dynamic program with Ukkonen's cutoff,
+ * which only computes rows that can still be within k, O(n * k) expected.
+ */
+public final class ApproximateMatcher {
+    private static final int ALPHABET = 256;
+    private static final int WORD = 64;
+
+    private final String pattern;
+    private final char[] chars;
+    private final int k;
+    private final boolean edits;
+    // bit i set when pattern char i equals the char, for patterns up to WORD chars
+    private final long[] lowMasks;
+    // pattern positions holding chars >= ALPHABET, checked one by one for such chars
+    private final int[] highPositions;
+
+    private ApproximateMatcher(String pattern, int k, boolean edits) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Distance must not be negative: " + k);
+        }
+        this.pattern = pattern;
+        this.chars = pattern.toCharArray();
+        this.k = k;
+        this.edits = edits;
+        if (chars.length > WORD) {
+            this.lowMasks = null;
+            this.highPositions = null;
+            return;
+        }
+        this.lowMasks = new long[ALPHABET];
+        int high = 0;
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] < ALPHABET) {
+                lowMasks[chars[i]] |= 1L << i;
+            } else {
+                high++;
+            }
+        }
+        this.highPositions = new int[high];
+        for (int i = 0, h = 0; i < chars.length; i++) {
+            if (chars[i] >= ALPHABET) {
+                highPositions[h++] = i;
+            }
+        }
+    }
+
+    // matches windows of pattern length with at most k differing chars.
+    // a null pattern is treated as empty
+    public static ApproximateMatcher hamming(String pattern, int k) {
+        return new ApproximateMatcher(pattern == null ? "" : pattern, k, false);
+    }
+
+    // matches substrings within Levenshtein distance k of the pattern
+    public static ApproximateMatcher editDistance(String pattern, int k) {
+        return new ApproximateMatcher(pattern == null ? "" : pattern, k, true);
+    }
+
+    public String pattern() {
+        return pattern;
+    }
+
+    public int length() {
+        return chars.length;
+    }
+
+    public int maxDistance() {
+        return k;
+    }
+
+    public boolean isEditDistance() {
+        return edits;
+    }
+
+    // pushes every match into the sink and returns the number of matches.
+    // an empty pattern reports nothing, like the exact engines
+    public int findAll(CharSequence text, ApproximateMatchSink sink) {
+        if (text == null || chars.length == 0) {
+            return 0;
+        }
+        if (edits) {
+            return chars.length <= WORD ? myers(text, sink) : sellers(text, sink);
+        }
+        return chars.length <= WORD ? wuManber(text, sink) : hammingWindows(text, sink);
+    }
+
+    public int count(CharSequence text) {
+        return findAll(text, (offset, distance) -> { });
+    }
+
+    // r[d] bit i is set when the last i + 1 text chars match the first i + 1 pattern chars
+    // with at most d substitutions. r[d] is a subset of r[d + 1], so the first word holding
+    // the top bit gives the window's distance
+    private int wuManber(CharSequence text, ApproximateMatchSink sink) {
+        int m = chars.length;
+        int errors = Math.min(k, m);
+        long top = 1L << (m - 1);
+        long[] r = new long[errors + 1];
+        int n = text.length();
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            long mask = mask(text.charAt(i));
+            long previous = r[0];
+            r[0] = ((previous << 1) | 1L) & mask;
+            for (int d = 1; d <= errors; d++) {
+                long current = r[d];
+                r[d] = (((current << 1) | 1L) & mask) | ((previous << 1) | 1L);
+                previous = current;
+            }
+            if ((r[errors] & top) != 0) {
+                int d = 0;
+                while ((r[d] & top) == 0) {
+                    d++;
+                }
+                sink.onMatch(i - m + 1, d);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int hammingWindows(CharSequence text, ApproximateMatchSink sink) {
+        int m = chars.length;
+        int n = text.length();
+        int count = 0;
+        for (int s = 0; s + m <= n; s++) {
+            int mismatches = 0;
+            for (int i = 0; i < m && mismatches <= k; i++) {
+                if (text.charAt(s + i) != chars[i]) {
+                    mismatches++;
+                }
+            }
+            if (mismatches <= k) {
+                sink.onMatch(s, mismatches);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Myers' bit-vector algorithm as formulated by Hyyro: pv/mv encode the +1/-1 vertical
+    // deltas of the current DP column and score tracks its last cell. shifting the horizontal
+    // deltas in without a carry keeps row 0 at 0, so a match may start anywhere
+    private int myers(CharSequence text, ApproximateMatchSink sink) {
+        int m = chars.length;
+        long top = 1L << (m - 1);
+        long pv = -1L;
+        long mv = 0L;
+        int score = m;
+        int n = text.length();
+        int count = 0;
+        for (int j = 0; j < n; j++) {
+            long eq = mask(text.charAt(j));
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            if ((ph & top) != 0) {
+                score++;
+            } else if ((mh & top) != 0) {
+                score--;
+            }
+            ph <<= 1;
+            mh <<= 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+            if (score <= k) {
+                sink.onMatch(j + 1, score);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // column col[i] is the edit distance between pattern[0, i) and the best substring ending
+    // at the current text position. rows past last are known to exceed k and hold k + 1,
+    // any value above k gives the same answers for the cells that are within k
+    private int sellers(CharSequence text, ApproximateMatchSink sink) {
+        int m = chars.length;
+        int[] col = new int[m + 1];
+        for (int i = 0; i <= m; i++) {
+            col[i] = Math.min(i, k + 1);
+        }
+        int last = Math.min(k, m);
+        int n = text.length();
+        int count = 0;
+        for (int j = 0; j < n; j++) {
+            char c = text.charAt(j);
+            int diagonal = 0;
+            int rows = Math.min(m, last + 1);
+            for (int i = 1; i <= rows; i++) {
+                int up = col[i];
+                int cost = chars[i - 1] == c ? 0 : 1;
+                col[i] = Math.min(diagonal + cost, 1 + Math.min(up, col[i - 1]));
+                diagonal = up;
+            }
+            last = rows;
+            while (last > 0 && col[last] > k) {
+                last--;
+            }
+            if (last == m) {
+                sink.onMatch(j + 1, col[m]);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long mask(char c) {
+        if (c < ALPHABET) {
+            return lowMasks[c];
+        }
+        long mask = 0;
+        for (int i : highPositions) {
+            if (chars[i] == c) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+}
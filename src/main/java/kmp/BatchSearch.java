@@ -0,0 +1,186 @@
+package kmp;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs one or more compiled patterns over many texts on an executor and hands the
+ * results back in input order. At most maxInFlight texts are submitted but not yet
+ * consumed at any time, which bounds memory for arbitrarily large batches: texts are
+ * pulled from the iterator only as earlier results are delivered.
+ *
+ * The executor is owned by the caller and is not shut down here.
+ */
+public final class BatchSearch {
+    private final CompiledPattern[] patterns;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+
+    public BatchSearch(List<CompiledPattern> patterns, ExecutorService executor, int maxInFlight) {
+        if (patterns.isEmpty()) {
+            throw new IllegalArgumentException("At least one pattern is required");
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.patterns = patterns.toArray(new CompiledPattern[0]);
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Result of searching one text: the match offsets of every pattern, in pattern order.
+     */
+    public static final class Result {
+        private final int index;
+        private final int[][] matches;
+
+        Result(int index, int[][] matches) {
+            this.index = index;
+            this.matches = matches;
+        }
+
+        // position of the text in the batch
+        public int index() {
+            return index;
+        }
+
+        public int[] matches(int patternIndex) {
+            return matches[patternIndex].clone();
+        }
+
+        public int count(int patternIndex) {
+            return matches[patternIndex].length;
+        }
+    }
+
+    // a virtual-thread-per-task executor on JDK 21+, otherwise a fixed pool with one thread per core.
+    // JDK 19 and 20 have the method too, but only as a preview feature that throws without --enable-preview
+    public static ExecutorService newDefaultExecutor() {
+        if (Runtime.version().feature() >= 21) {
+            try {
+                return (ExecutorService) MethodHandles.publicLookup()
+                        .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                                MethodType.methodType(ExecutorService.class))
+                        .invoke();
+            } catch (Throwable e) {
+                // fall through to the fixed pool
+            }
+        }
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    // searches every text and returns the results in input order
+    public List<Result> searchAll(List<? extends CharSequence> texts) throws InterruptedException {
+        List<Result> results = new ArrayList<>(texts.size());
+        Iterator<? extends CharSequence> iterator = texts.iterator();
+        forEachOrdered(new Iterator<Supplier<CharSequence>>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Supplier<CharSequence> next() {
+                CharSequence text = iterator.next();
+                return () -> text;
+            }
+        }, results::add);
+        return results;
+    }
+
+    // texts are produced by their suppliers on the worker threads, so loading can run in parallel too.
+    // the consumer runs on the calling thread, one result at a time, in input order
+    public void forEachOrdered(Iterator<? extends Supplier<? extends CharSequence>> texts,
+                               Consumer<Result> consumer) throws InterruptedException {
+        forEachOrdered(executor, maxInFlight, new Iterator<Callable<Result>>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return texts.hasNext();
+            }
+
+            @Override
+            public Callable<Result> next() {
+                Supplier<? extends CharSequence> text = texts.next();
+                int textIndex = index++;
+                return () -> search(textIndex, text.get());
+            }
+        }, consumer);
+    }
+
+    // the same ordered window for arbitrary tasks: at most maxInFlight tasks are submitted but not yet
+    // consumed, tasks are pulled from the iterator only as earlier results are delivered and the
+    // consumer runs on the calling thread in input order. a failed task is rethrown unchecked
+    public static <R> void forEachOrdered(ExecutorService executor, int maxInFlight,
+                                          Iterator<? extends Callable<? extends R>> tasks,
+                                          Consumer<? super R> consumer) throws InterruptedException {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        ArrayDeque<Future<? extends R>> inFlight = new ArrayDeque<>();
+        try {
+            while (tasks.hasNext()) {
+                if (inFlight.size() == maxInFlight) {
+                    consumer.accept(await(inFlight.poll()));
+                }
+                inFlight.add(executor.submit(tasks.next()));
+            }
+            while (!inFlight.isEmpty()) {
+                consumer.accept(await(inFlight.poll()));
+            }
+        } finally {
+            for (Future<? extends R> pending : inFlight) {
+                pending.cancel(true);
+            }
+        }
+    }
+
+    // Strings go to the String overload, which runs the compiled engine and records metrics;
+    // other char sequences are scanned char by char
+    private Result search(int index, CharSequence text) {
+        int[][] matches = new int[patterns.length][];
+        MatchBuffer buffer = new MatchBuffer();
+        for (int p = 0; p < patterns.length; p++) {
+            buffer.clear();
+            if (text instanceof String) {
+                patterns[p].findAll((String) text, buffer);
+            } else {
+                patterns[p].findAll(text, buffer);
+            }
+            matches[p] = buffer.toArray();
+        }
+        return new Result(index, matches);
+    }
+
+    private static <R> R await(Future<R> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CompletionException(cause);
+        } catch (CancellationException e) {
+            throw new CompletionException(e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package kmp;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Finds the next occurrence of a byte, used to skip ahead while the KMP state is 0.
+ *
+ * When the jar is built with the vector profile it is a multi-release jar carrying
+ * kmp.VectorPrefilter for Java 17+, which compares a full vector register of bytes per step
+ * with jdk.incubator.vector. That class is used when it is present and the JVM was started
+ * with --add-modules jdk.incubator.vector; otherwise this scalar loop runs. Both give
+ * identical results.
+ */
+final class BytePrefilter {
+    private static final MethodHandle VECTOR = lookupVector();
+
+    static final boolean VECTORIZED = VECTOR != null;
+
+    private BytePrefilter() {
+    }
+
+    // index of the first b in a[from, to), or -1
+    static int indexOf(byte[] a, int from, int to, byte b) {
+        if (VECTOR != null) {
+            try {
+                return (int) VECTOR.invokeExact(a, from, to, b);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Vector prefilter failed", e);
+            }
+        }
+        for (int i = from; i < to; i++) {
+            if (a[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static MethodHandle lookupVector() {
+        try {
+            if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+                return null;
+            }
+            Class<?> vector = Class.forName("kmp.VectorPrefilter");
+            return MethodHandles.lookup().findStatic(vector, "indexOf",
+                    MethodType.methodType(int.class, byte[].class, int.class, int.class, byte.class));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
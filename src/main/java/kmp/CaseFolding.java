@@ -0,0 +1,15 @@
+package kmp;
+
+/**
+ * How characters are compared. Folding is applied to the pattern once at compile time
+ * and to each text character inside the scan, so no lowercased copy of the text is made.
+ */
+public enum CaseFolding {
+    // exact char comparison
+    NONE,
+    // A-Z match a-z, every other char is compared exactly
+    ASCII,
+    // Unicode simple case folding, the same per-character rule as String.equalsIgnoreCase.
+    // supplementary characters are only folded in code-point mode
+    UNICODE
+}
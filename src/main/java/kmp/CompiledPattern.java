@@ -0,0 +1,1001 @@
+package kmp;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A pattern whose LPS array has been computed once up front.
+ * Instances are immutable, so a single compiled pattern can be shared
+ * between threads and reused for any number of texts.
+ */
+public final class CompiledPattern {
+    // default cap on the automaton table size in bytes (4 MB, roughly 4000 pattern chars)
+    public static final long DEFAULT_AUTOMATON_LIMIT = 4L << 20;
+
+    static final int ALPHABET = 256;
+
+    private final String pattern;
+    private final MatchOptions options;
+    private final CaseFolding folding;
+    private final boolean codePoints;
+    // the pattern after case folding, which is what the lps array describes
+    private final char[] chars;
+    private final FailureTable lps;
+    // (m + 1) rows of ALPHABET next states, or null when the lps engine is used
+    private final int[] automaton;
+    // the same rows read in place from a PatternStore file, or null
+    private final IntBuffer mappedAutomaton;
+    // first pattern char for the String and byte prefilters, or -1 when they are off
+    private final int firstChar;
+    private final int firstByte;
+    // engine used for String texts: LPS, AUTOMATON, HORSPOOL or INDEX_OF
+    private final Engine engine;
+    // Horspool shift per low byte of the text char. chars sharing a low byte share the smallest
+    // shift, which is never too far, so one small table also covers chars >= 256
+    private final int[] shift;
+
+    CompiledPattern(String pattern) {
+        this(pattern, MatchOptions.DEFAULT);
+    }
+
+    CompiledPattern(String pattern, MatchOptions options) {
+        this(pattern, options, null);
+    }
+
+    // lps, when not null, is the failure table of pattern itself; options that fold chars
+    // change the table and must pass null so it is computed here
+    CompiledPattern(String pattern, MatchOptions options, FailureTable lps) {
+        this.pattern = pattern;
+        this.options = options;
+        this.folding = options.caseFolding();
+        this.codePoints = options.codePoints();
+        this.chars = new char[pattern.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = fold(codePoints ? codePointUnit(pattern, i) : pattern.charAt(i));
+        }
+        this.lps = lps != null ? lps : FailureTable.of(chars, options.offHeap());
+        Engine selected = selectEngine(options, chars, this.lps);
+        // unicode folding can map chars below 256 onto chars above it, which the table cannot express
+        this.automaton = selected == Engine.AUTOMATON && folding != CaseFolding.UNICODE
+                && fitsAutomaton(chars, options.automatonLimit())
+                ? buildAutomaton(chars, this.lps, folding)
+                : null;
+        if (selected == Engine.AUTOMATON && automaton == null) {
+            selected = Engine.LPS;
+        }
+        this.mappedAutomaton = null;
+        this.engine = selected;
+        this.shift = selected == Engine.HORSPOOL ? buildShiftTable(chars) : null;
+        boolean prefilter = options.prefilter() && folding == CaseFolding.NONE && chars.length > 0;
+        this.firstChar = prefilter ? chars[0] : -1;
+        this.firstByte = prefilter && chars[0] < ALPHABET ? chars[0] : -1;
+    }
+
+    // rebuilds a pattern around tables read from a PatternStore file, without recomputing them
+    CompiledPattern(String pattern, MatchOptions options, Engine engine, FailureTable lps, IntBuffer automaton) {
+        this.pattern = pattern;
+        this.options = options;
+        this.folding = options.caseFolding();
+        this.codePoints = options.codePoints();
+        this.chars = new char[pattern.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = fold(codePoints ? codePointUnit(pattern, i) : pattern.charAt(i));
+        }
+        this.lps = lps;
+        this.automaton = null;
+        this.mappedAutomaton = automaton;
+        this.engine = engine;
+        this.shift = engine == Engine.HORSPOOL ? buildShiftTable(chars) : null;
+        boolean prefilter = options.prefilter() && folding == CaseFolding.NONE && chars.length > 0;
+        this.firstChar = prefilter ? chars[0] : -1;
+        this.firstByte = prefilter && chars[0] < ALPHABET ? chars[0] : -1;
+    }
+
+    // patterns up to this length go to String.indexOf under AUTO: its O(n * m) worst case is then
+    // bounded by a small constant factor
+    static final int SHORT_PATTERN = 8;
+    // comparisons per scanned char that horspool may spend before handing over to kmp
+    static final long HORSPOOL_BUDGET = 4;
+
+    private static Engine selectEngine(MatchOptions options, char[] chars, FailureTable lps) {
+        Engine requested = options.engine();
+        boolean plain = options.caseFolding() == CaseFolding.NONE && !options.codePoints() && chars.length > 0;
+        if (requested == Engine.HORSPOOL || requested == Engine.INDEX_OF) {
+            return plain ? requested : Engine.LPS;
+        }
+        if (requested != Engine.AUTO) {
+            return requested;
+        }
+        if (!plain) {
+            return Engine.AUTOMATON;
+        }
+        if (chars.length <= SHORT_PATTERN) {
+            return Engine.INDEX_OF;
+        }
+        // a long border means a short period: skips are small and KMP's guarantee matters most
+        int border = 0;
+        for (int k = 0; k < lps.length(); k++) {
+            border = Math.max(border, lps.get(k));
+        }
+        return border * 2 >= chars.length ? Engine.AUTOMATON : Engine.HORSPOOL;
+    }
+
+    private static int[] buildShiftTable(char[] chars) {
+        int m = chars.length;
+        int[] table = new int[ALPHABET];
+        Arrays.fill(table, m);
+        for (int k = 0; k < m - 1; k++) {
+            int slot = chars[k] & 0xFF;
+            table[slot] = Math.min(table[slot], m - 1 - k);
+        }
+        return table;
+    }
+
+    private static boolean fitsAutomaton(char[] chars, long maxBytes) {
+        if (chars.length == 0 || (chars.length + 1L) * ALPHABET * Integer.BYTES > maxBytes) {
+            return false;
+        }
+        for (char c : chars) {
+            if (c >= ALPHABET) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // row j holds the state reached from state j for every byte value.
+    // a mismatch in state j behaves exactly like state lps[j - 1], so that row is copied
+    // and only the transition on the expected character is overridden
+    // with ascii folding the upper-case columns are copies of the lower-case ones,
+    // so folding costs nothing during the scan
+    private static int[] buildAutomaton(char[] chars, FailureTable lps, CaseFolding folding) {
+        int m = chars.length;
+        int[] table = new int[(m + 1) * ALPHABET];
+
+        table[chars[0]] = 1;
+        for (int j = 1; j <= m; j++) {
+            System.arraycopy(table, lps.get(j - 1) * ALPHABET, table, j * ALPHABET, ALPHABET);
+            if (j < m) {
+                table[j * ALPHABET + chars[j]] = j + 1;
+            }
+        }
+        if (folding == CaseFolding.ASCII) {
+            for (int row = 0; row <= m; row++) {
+                System.arraycopy(table, row * ALPHABET + 'a', table, row * ALPHABET + 'A', 26);
+            }
+        }
+
+        return table;
+    }
+
+    public String pattern() {
+        return pattern;
+    }
+
+    public MatchOptions options() {
+        return options;
+    }
+
+    public int length() {
+        return chars.length;
+    }
+
+    // the engine used for String texts after AUTO selection and fallbacks; never AUTO
+    public Engine engine() {
+        return engine;
+    }
+
+    // bytes held by the lps, automaton and shift tables, on or off the heap
+    public long tableBytes() {
+        return lps.sizeBytes() + (long) automatonLength() * Integer.BYTES
+                + (shift == null ? 0 : (long) shift.length * Integer.BYTES);
+    }
+
+    // returns a copy so callers cannot modify the shared table, widened to int whatever the stored width
+    public int[] lps() {
+        return lps.toArray();
+    }
+
+    FailureTable failureTable() {
+        return lps;
+    }
+
+    int automatonLength() {
+        if (automaton != null) {
+            return automaton.length;
+        }
+        return mappedAutomaton == null ? 0 : mappedAutomaton.capacity();
+    }
+
+    int automatonEntry(int k) {
+        return automaton != null ? automaton[k] : mappedAutomaton.get(k);
+    }
+
+    // starts a fresh incremental matcher for chunked input
+    public StreamMatcher matcher() {
+        return new StreamMatcher(this);
+    }
+
+    // a search over text that can be bounded by a deadline, cancelled and resumed from a cursor
+    public ResumableSearch resumableSearch(CharSequence text) {
+        return new ResumableSearch(this, text);
+    }
+
+    // lazy iterator of match offsets; the text is only scanned as far as the caller advances
+    public PrimitiveIterator.OfInt matchIterator(CharSequence text) {
+        return Spliterators.iterator(matchSpliterator(text));
+    }
+
+    // splits at most down to ParallelSearch.MIN_SEGMENT chars, so parallel streams
+    // get segments large enough to outweigh the m - 1 overlap
+    public Spliterator.OfInt matchSpliterator(CharSequence text) {
+        return new MatchSpliterator(this, text == null ? "" : text, ParallelSearch.MIN_SEGMENT);
+    }
+
+    // match offsets in order; parallel() splits the text like findAllParallel
+    public IntStream matches(CharSequence text) {
+        return StreamSupport.intStream(matchSpliterator(text), false);
+    }
+
+    public int indexOf(String text) {
+        return indexOf(text, 0);
+    }
+
+    public int indexOf(String text, int fromIndex) {
+        SearchMetrics metrics = KMPAlgorithm.metrics;
+        if (metrics == null) {
+            return indexOf(text, fromIndex, null);
+        }
+        long start = System.nanoTime();
+        int index = indexOf(text, fromIndex, metrics);
+        long elapsed = System.nanoTime() - start;
+        long scanned = 0;
+        if (text != null) {
+            int end = index >= 0 ? index + chars.length : text.length();
+            scanned = Math.max(0, end - Math.max(0, fromIndex));
+        }
+        metrics.record(this, elapsed, scanned, index >= 0 ? 1 : 0);
+        return index;
+    }
+
+    // metrics is null for unmetered calls
+    private int indexOf(String text, int fromIndex, SearchMetrics metrics) {
+        if (text == null) {
+            return -1;
+        }
+        int n = text.length();
+        int m = chars.length;
+        if (fromIndex < 0) {
+            fromIndex = 0;
+        }
+        if (m == 0) {
+            return Math.min(fromIndex, n);
+        }
+        if (fromIndex >= n || n - fromIndex < m) {
+            return -1;
+        }
+        if (codePoints) {
+            return indexOfCodePoints(text, fromIndex, n);
+        }
+        if (engine == Engine.INDEX_OF) {
+            return text.indexOf(pattern, fromIndex);
+        }
+        if (engine == Engine.HORSPOOL) {
+            return indexOfHorspool(text, fromIndex, n, metrics);
+        }
+
+        return indexOfLps(text, fromIndex, n, metrics);
+    }
+
+    private int indexOfLps(String text, int from, int to, SearchMetrics metrics) {
+        if (metrics == null || !followsFailureLinks()) {
+            return indexOfLps(text, from, to);
+        }
+        MatchBuffer first = new MatchBuffer(1);
+        return findAllLpsCounting(text, from, to, first, 1, metrics) > 0 ? first.get(0) : -1;
+    }
+
+    private int indexOfLps(String text, int from, int to) {
+        int m = chars.length;
+        // a match cannot start after this
+        int lastStart = to - m;
+        int j = 0;
+        for (int i = from; i < to; i++) {
+            if (j == 0 && firstChar >= 0) {
+                i = indexOf(text, (char) firstChar, i, lastStart + 1);
+                if (i < 0) {
+                    return -1;
+                }
+            }
+            j = next(j, text.charAt(i));
+            if (j == m) {
+                return i - m + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    public int[] findAll(String text) {
+        MatchBuffer matches = new MatchBuffer();
+        findAll(text, matches);
+        return matches.toArray();
+    }
+
+    // pushes every match offset into the sink and returns the number of matches
+    public int findAll(String text, MatchSink sink) {
+        SearchMetrics metrics = KMPAlgorithm.metrics;
+        if (metrics == null) {
+            return findAll(text, sink, null);
+        }
+        long start = System.nanoTime();
+        int count = findAll(text, sink, metrics);
+        metrics.record(this, System.nanoTime() - start, text == null ? 0 : text.length(), count);
+        return count;
+    }
+
+    private int findAll(String text, MatchSink sink, SearchMetrics metrics) {
+        int m = chars.length;
+        if (text == null || m == 0 || text.length() < m) {
+            return 0;
+        }
+
+        return findAll(text, 0, text.length(), sink, metrics);
+    }
+
+    // scans text[from, to) from the initial state, so only matches lying fully inside the range are reported
+    int findAll(String text, int from, int to, MatchSink sink) {
+        return findAll(text, from, to, sink, null);
+    }
+
+    private int findAll(String text, int from, int to, MatchSink sink, SearchMetrics metrics) {
+        if (codePoints) {
+            return findAllCodePoints(text, from, to, sink);
+        }
+        if (engine == Engine.INDEX_OF) {
+            return findAllIndexOf(text, from, to, sink);
+        }
+        if (engine == Engine.HORSPOOL) {
+            return findAllHorspool(text, from, to, sink, metrics);
+        }
+
+        return findAllLps(text, from, to, sink, metrics);
+    }
+
+    private int findAllLps(String text, int from, int to, MatchSink sink, SearchMetrics metrics) {
+        if (metrics == null || !followsFailureLinks()) {
+            return findAllLps(text, from, to, sink);
+        }
+        return findAllLpsCounting(text, from, to, sink, Integer.MAX_VALUE, metrics);
+    }
+
+    private int findAllLps(String text, int from, int to, MatchSink sink) {
+        int m = chars.length;
+        int count = 0;
+
+        int lastStart = to - m;
+        int j = 0;
+        for (int i = from; i < to; i++) {
+            if (j == 0 && firstChar >= 0) {
+                i = indexOf(text, (char) firstChar, i, lastStart + 1);
+                if (i < 0) {
+                    break;
+                }
+            }
+            j = next(j, text.charAt(i));
+            if (j == m) {
+                sink.onMatch(i - m + 1);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    // findAllLps with next() inlined so every failure link followed can be counted. only metered
+    // calls come here, so the plain loops pay nothing for the counter. stops after limit matches
+    private int findAllLpsCounting(String text, int from, int to, MatchSink sink, int limit, SearchMetrics metrics) {
+        int m = chars.length;
+        int lastStart = to - m;
+        long links = 0;
+        int count = 0;
+        int j = 0;
+        for (int i = from; i < to && count < limit; i++) {
+            if (j == 0 && firstChar >= 0) {
+                i = indexOf(text, (char) firstChar, i, lastStart + 1);
+                if (i < 0) {
+                    break;
+                }
+            }
+            char c = text.charAt(i);
+            if (folding != CaseFolding.NONE) {
+                c = fold(c);
+            }
+            if (j == m) {
+                j = lps.get(j - 1);
+                links++;
+            }
+            while (j > 0 && chars[j] != c) {
+                j = lps.get(j - 1);
+                links++;
+            }
+            j = chars[j] == c ? j + 1 : 0;
+            if (j == m) {
+                sink.onMatch(i - m + 1);
+                count++;
+            }
+        }
+        metrics.recordFailureLinks(this, links);
+        return count;
+    }
+
+    // the automaton folds the failure links into its table, so its scans follow none
+    private boolean followsFailureLinks() {
+        return automaton == null && mappedAutomaton == null;
+    }
+
+    // first index of c in text[from, to), or -1. String.indexOf cannot be bounded before JDK 21,
+    // so it is only used when the range runs to the end of the text; a segment of a parallel
+    // search would otherwise scan the rest of the whole text whenever c is rare
+    private static int indexOf(String text, char c, int from, int to) {
+        if (to >= text.length()) {
+            int index = text.indexOf(c, from);
+            return index < to ? index : -1;
+        }
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // String.indexOf has no end bound, so a range that stops short of the text end is searched
+    // in a copy of just that range; otherwise a parallel segment would scan to the end of the text
+    private int findAllIndexOf(String text, int from, int to, MatchSink sink) {
+        int m = chars.length;
+        if (to - from < m) {
+            return 0;
+        }
+        String window = text;
+        int base = 0;
+        if (to < text.length()) {
+            window = text.substring(from, to);
+            base = from;
+        }
+        int count = 0;
+        for (int i = window.indexOf(pattern, from - base); i >= 0; i = window.indexOf(pattern, i + 1)) {
+            sink.onMatch(base + i);
+            count++;
+        }
+        return count;
+    }
+
+    // horspool compares the last char first and shifts by the table on the char under it.
+    // work counts char comparisons; once it exceeds what a linear scan of the same stretch
+    // would cost, the pattern is hitting its quadratic case and the rest goes to the lps loop.
+    // every alignment before s has been checked, so kmp can restart at s from the initial state
+    private int indexOfHorspool(String text, int from, int to, SearchMetrics metrics) {
+        int last = chars.length - 1;
+        char lastChar = chars[last];
+        long work = 0;
+        int s = from;
+        while (s <= to - chars.length) {
+            char c = text.charAt(s + last);
+            work++;
+            if (c == lastChar) {
+                int k = 0;
+                while (k < last && text.charAt(s + k) == chars[k]) {
+                    k++;
+                }
+                if (k == last) {
+                    return s;
+                }
+                work += k;
+            }
+            s += shift[c & 0xFF];
+            if (work > HORSPOOL_BUDGET * ((long) s - from + chars.length)) {
+                countHorspoolFallback(metrics);
+                return indexOfLps(text, s, to, metrics);
+            }
+        }
+        return -1;
+    }
+
+    private int findAllHorspool(String text, int from, int to, MatchSink sink, SearchMetrics metrics) {
+        int last = chars.length - 1;
+        char lastChar = chars[last];
+        long work = 0;
+        int count = 0;
+        int s = from;
+        while (s <= to - chars.length) {
+            char c = text.charAt(s + last);
+            work++;
+            if (c == lastChar) {
+                int k = 0;
+                while (k < last && text.charAt(s + k) == chars[k]) {
+                    k++;
+                }
+                if (k == last) {
+                    sink.onMatch(s);
+                    count++;
+                }
+                work += k;
+            }
+            s += shift[c & 0xFF];
+            if (work > HORSPOOL_BUDGET * ((long) s - from + chars.length)) {
+                countHorspoolFallback(metrics);
+                return count + findAllLps(text, s, to, sink, metrics);
+            }
+        }
+        return count;
+    }
+
+    // metered String calls pass their metrics; the other overloads are not metered
+    // but still report the handover to whatever metrics are installed
+    private void countHorspoolFallback(SearchMetrics metrics) {
+        if (metrics == null) {
+            metrics = KMPAlgorithm.metrics;
+        }
+        if (metrics != null) {
+            metrics.recordHorspoolFallback(this);
+        }
+    }
+
+    // the overloads below give every input type its own loop, so each call site stays
+    // monomorphic and array loops run over a range checked once up front.
+    // returned offsets are indices into the array or buffer, not relative to offset
+
+    public int indexOf(char[] text, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, text.length);
+        int m = chars.length;
+        if (m == 0) {
+            return offset;
+        }
+        if (codePoints) {
+            return indexOfCodePoints(CharBuffer.wrap(text), offset, offset + length);
+        }
+
+        int end = offset + length;
+        int j = 0;
+        for (int i = offset; i < end; i++) {
+            j = next(j, text[i]);
+            if (j == m) {
+                return i - m + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    public int findAll(char[] text, int offset, int length, MatchSink sink) {
+        Objects.checkFromIndexSize(offset, length, text.length);
+        int m = chars.length;
+        if (m == 0) {
+            return 0;
+        }
+        if (codePoints) {
+            return findAllCodePoints(CharBuffer.wrap(text), offset, offset + length, sink);
+        }
+
+        int end = offset + length;
+        int count = 0;
+        int j = 0;
+        for (int i = offset; i < end; i++) {
+            j = next(j, text[i]);
+            if (j == m) {
+                sink.onMatch(i - m + 1);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    public int indexOf(CharSequence text) {
+        if (text == null) {
+            return -1;
+        }
+        int m = chars.length;
+        if (m == 0) {
+            return 0;
+        }
+        if (codePoints) {
+            return indexOfCodePoints(text, 0, text.length());
+        }
+
+        int n = text.length();
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            j = next(j, text.charAt(i));
+            if (j == m) {
+                return i - m + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    public int findAll(CharSequence text, MatchSink sink) {
+        int m = chars.length;
+        if (text == null || m == 0) {
+            return 0;
+        }
+        if (codePoints) {
+            return findAllCodePoints(text, 0, text.length(), sink);
+        }
+
+        int n = text.length();
+        int count = 0;
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            j = next(j, text.charAt(i));
+            if (j == m) {
+                sink.onMatch(i - m + 1);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    // byte mode: every byte b is matched as the char (b & 0xFF), see KMPAlgorithm.compileBytes.
+    // there are no surrogates in this view, so code-point mode does not apply
+    public int indexOf(byte[] text, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, text.length);
+        int m = chars.length;
+        if (m == 0) {
+            return offset;
+        }
+        if (engine == Engine.HORSPOOL) {
+            return indexOfHorspool(text, offset, offset + length);
+        }
+        return indexOfLps(text, offset, offset + length);
+    }
+
+    // each byte is read as the char (b & 0xFF); pattern chars above 0xFF never match
+    private int indexOfHorspool(byte[] text, int from, int to) {
+        int last = chars.length - 1;
+        char lastChar = chars[last];
+        long work = 0;
+        int s = from;
+        while (s <= to - chars.length) {
+            int c = text[s + last] & 0xFF;
+            work++;
+            if (c == lastChar) {
+                int k = 0;
+                while (k < last && (text[s + k] & 0xFF) == chars[k]) {
+                    k++;
+                }
+                if (k == last) {
+                    return s;
+                }
+                work += k;
+            }
+            s += shift[c];
+            if (work > HORSPOOL_BUDGET * ((long) s - from + chars.length)) {
+                countHorspoolFallback(null);
+                return indexOfLps(text, s, to);
+            }
+        }
+        return -1;
+    }
+
+    private int indexOfLps(byte[] text, int from, int end) {
+        int m = chars.length;
+        int j = 0;
+        for (int i = from; i < end; i++) {
+            if (j == 0 && firstByte >= 0) {
+                i = BytePrefilter.indexOf(text, i, end, (byte) firstByte);
+                if (i < 0) {
+                    return -1;
+                }
+            }
+            j = next(j, (char) (text[i] & 0xFF));
+            if (j == m) {
+                return i - m + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    public int findAll(byte[] text, int offset, int length, MatchSink sink) {
+        Objects.checkFromIndexSize(offset, length, text.length);
+        int m = chars.length;
+        if (m == 0) {
+            return 0;
+        }
+
+        int end = offset + length;
+        int count = 0;
+        int j = 0;
+        for (int i = offset; i < end; i++) {
+            if (j == 0 && firstByte >= 0) {
+                i = BytePrefilter.indexOf(text, i, end, (byte) firstByte);
+                if (i < 0) {
+                    break;
+                }
+            }
+            j = next(j, (char) (text[i] & 0xFF));
+            if (j == m) {
+                sink.onMatch(i - m + 1);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    // searches the bytes between position and limit without moving the position
+    public int indexOf(ByteBuffer text) {
+        if (text.hasArray()) {
+            int base = text.arrayOffset();
+            int index = indexOf(text.array(), base + text.position(), text.remaining());
+            return index == -1 ? -1 : index - base;
+        }
+        int m = chars.length;
+        if (m == 0) {
+            return text.position();
+        }
+        if (engine == Engine.HORSPOOL) {
+            return indexOfHorspool(text, text.position(), text.limit());
+        }
+        return indexOfLps(text, text.position(), text.limit());
+    }
+
+    private int indexOfHorspool(ByteBuffer text, int from, int to) {
+        int last = chars.length - 1;
+        char lastChar = chars[last];
+        long work = 0;
+        int s = from;
+        while (s <= to - chars.length) {
+            int c = text.get(s + last) & 0xFF;
+            work++;
+            if (c == lastChar) {
+                int k = 0;
+                while (k < last && (text.get(s + k) & 0xFF) == chars[k]) {
+                    k++;
+                }
+                if (k == last) {
+                    return s;
+                }
+                work += k;
+            }
+            s += shift[c];
+            if (work > HORSPOOL_BUDGET * ((long) s - from + chars.length)) {
+                countHorspoolFallback(null);
+                return indexOfLps(text, s, to);
+            }
+        }
+        return -1;
+    }
+
+    private int indexOfLps(ByteBuffer text, int from, int end) {
+        int m = chars.length;
+        int j = 0;
+        for (int i = from; i < end; i++) {
+            j = next(j, (char) (text.get(i) & 0xFF));
+            if (j == m) {
+                return i - m + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    public int findAll(ByteBuffer text, MatchSink sink) {
+        if (text.hasArray()) {
+            int base = text.arrayOffset();
+            return findAll(text.array(), base + text.position(), text.remaining(),
+                    base == 0 ? sink : offset -> sink.onMatch(offset - base));
+        }
+        int m = chars.length;
+        if (m == 0) {
+            return 0;
+        }
+
+        int end = text.limit();
+        int count = 0;
+        int j = 0;
+        for (int i = text.position(); i < end; i++) {
+            j = next(j, (char) (text.get(i) & 0xFF));
+            if (j == m) {
+                sink.onMatch(i - m + 1);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    // splits large texts into segments scanned on the common fork/join pool.
+    // the result is identical to findAll(text)
+    public int[] findAllParallel(String text) {
+        return findAllParallel(text, ForkJoinPool.commonPool());
+    }
+
+    public int[] findAllParallel(String text, ForkJoinPool pool) {
+        int m = chars.length;
+        if (text == null || m == 0 || text.length() < m) {
+            return new int[0];
+        }
+        if (text.length() < ParallelSearch.THRESHOLD || pool.getParallelism() < 2) {
+            return findAll(text);
+        }
+
+        return ParallelSearch.findAll(this, text, pool, ParallelSearch.MIN_SEGMENT);
+    }
+
+    public int count(String text) {
+        SearchMetrics metrics = KMPAlgorithm.metrics;
+        if (metrics == null) {
+            return countUnmetered(text);
+        }
+        long start = System.nanoTime();
+        int count = text == null || chars.length == 0 || text.length() < chars.length
+                ? 0 : findAll(text, 0, text.length(), offset -> { }, metrics);
+        metrics.record(this, System.nanoTime() - start, text == null ? 0 : text.length(), count);
+        return count;
+    }
+
+    private int countUnmetered(String text) {
+        int m = chars.length;
+        if (text == null || m == 0 || text.length() < m) {
+            return 0;
+        }
+        if (codePoints) {
+            return findAllCodePoints(text, 0, text.length(), offset -> { });
+        }
+        if (engine == Engine.INDEX_OF || engine == Engine.HORSPOOL) {
+            return findAll(text, 0, text.length(), offset -> { });
+        }
+
+        int n = text.length();
+        int count = 0;
+
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            if (j == 0 && firstChar >= 0) {
+                i = text.indexOf(firstChar, i);
+                if (i < 0) {
+                    break;
+                }
+            }
+            j = next(j, text.charAt(i));
+            if (j == m) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    // code-point mode scans like the char loops but feeds each surrogate pair folded as a whole,
+    // and drops matches that would start or end inside a pair
+    private int indexOfCodePoints(CharSequence text, int from, int to) {
+        int m = chars.length;
+        int j = 0;
+        for (int i = from; i < to; i++) {
+            j = next(j, codePointUnit(text, i));
+            if (j == m && !splitsPair(text, i - m + 1, i)) {
+                return i - m + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    private int findAllCodePoints(CharSequence text, int from, int to, MatchSink sink) {
+        int m = chars.length;
+        int count = 0;
+        int j = 0;
+        for (int i = from; i < to; i++) {
+            j = next(j, codePointUnit(text, i));
+            if (j == m && !splitsPair(text, i - m + 1, i)) {
+                sink.onMatch(i - m + 1);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    // the char the matcher is fed for text index i, for callers that step next() themselves
+    char unitAt(CharSequence text, int i) {
+        return codePoints ? codePointUnit(text, i) : text.charAt(i);
+    }
+
+    // whether a match the matcher reports at start is a real one: code-point mode drops
+    // matches that start or end inside a surrogate pair
+    boolean accepts(CharSequence text, int start) {
+        return !codePoints || !splitsPair(text, start, start + chars.length - 1);
+    }
+
+    // the char at index i, with a complete surrogate pair replaced by the folded code point's pair
+    private char codePointUnit(CharSequence text, int i) {
+        char c = text.charAt(i);
+        if (!Character.isSurrogate(c)) {
+            return c;
+        }
+        return codePointUnit(i > 0 ? text.charAt(i - 1) : 0, c, i + 1 < text.length() ? text.charAt(i + 1) : 0);
+    }
+
+    // the same for a char given with its neighbours, where 0 stands for no char
+    char codePointUnit(char previous, char c, char next) {
+        if (Character.isHighSurrogate(c) && Character.isLowSurrogate(next)) {
+            return Character.highSurrogate(foldCodePoint(Character.toCodePoint(c, next)));
+        }
+        if (Character.isLowSurrogate(c) && Character.isHighSurrogate(previous)) {
+            return Character.lowSurrogate(foldCodePoint(Character.toCodePoint(previous, c)));
+        }
+        return c;
+    }
+
+    // supplementary code points are only replaced by supplementary folds, so offsets stay valid
+    private int foldCodePoint(int codePoint) {
+        if (folding != CaseFolding.UNICODE) {
+            return codePoint;
+        }
+        int folded = Character.toLowerCase(Character.toUpperCase(codePoint));
+        return Character.isSupplementaryCodePoint(folded) ? folded : codePoint;
+    }
+
+    private static boolean splitsPair(CharSequence text, int start, int end) {
+        return start > 0 && Character.isLowSurrogate(text.charAt(start))
+                && Character.isHighSurrogate(text.charAt(start - 1))
+                || end + 1 < text.length() && Character.isHighSurrogate(text.charAt(end))
+                && Character.isLowSurrogate(text.charAt(end + 1));
+    }
+
+    private char fold(char c) {
+        switch (folding) {
+            case ASCII:
+                return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+            case UNICODE:
+                return Character.toLowerCase(Character.toUpperCase(c));
+            default:
+                return c;
+        }
+    }
+
+    int firstByte() {
+        return firstByte;
+    }
+
+    // advances the matcher state j by one text character, either with a single table lookup
+    // or by following the lps chain on mismatch.
+    // a state equal to the pattern length means a match just ended.
+    int next(int j, char c) {
+        int[] table = automaton;
+        if (table != null) {
+            return c < ALPHABET ? table[j * ALPHABET + c] : 0;
+        }
+        IntBuffer mapped = mappedAutomaton;
+        if (mapped != null) {
+            return c < ALPHABET ? mapped.get(j * ALPHABET + c) : 0;
+        }
+        if (folding != CaseFolding.NONE) {
+            c = fold(c);
+        }
+        if (j == chars.length) {
+            j = lps.get(j - 1);
+        }
+        j = lps.follow(chars, j, c);
+        return chars[j] == c ? j + 1 : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledPattern[" + pattern + "]";
+    }
+}
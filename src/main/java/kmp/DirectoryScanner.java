@@ -0,0 +1,531 @@
+package kmp;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Recursive fixed-string search over a directory tree, printing matching lines like
+ * grep -rnF --column: path:line:column:text.
+ *
+ * The calling thread walks the tree and feeds file paths through a bounded queue to a pool
+ * of workers. A worker streams a file of at most the map threshold through a reused heap
+ * buffer in chunks that end on a line break, and memory-maps larger files in windows cut the
+ * same way; mapping only pays for itself on large files. The pattern is scanned with the
+ * Horspool engine, so most bytes of a line without a match are skipped rather than read.
+ * Each matching line is reported once, with the byte column of its first match. A line
+ * longer than a read chunk or window is searched in pieces that overlap by m - 1 bytes, so
+ * no match is lost and columns still count from the line start; only the piece holding the
+ * first match is printed as its text.
+ * Output goes through a second bounded queue to a single thread owning a buffered writer,
+ * so a slow writer holds back the workers instead of letting output pile up in memory.
+ * Lines of one file stay in order; lines of different files may interleave in chunks.
+ *
+ * The pattern is matched as UTF-8 bytes (see {@link KMPAlgorithm#compileBytes(byte[])}) and
+ * cannot contain a line break. A file whose first {@link #BINARY_PROBE} bytes contain a NUL
+ * is treated as binary and skipped, as grep does. Symbolic links are not followed.
+ *
+ * A file that cannot be read is listed in {@link Summary#errors()} and the scan goes on.
+ * Any other exception or error in a worker or the writer, including one thrown by the
+ * output writer, stops the walk: the remaining queued files are drained unread and
+ * {@link #scan(Path, Writer)} rethrows the first such failure once every thread is done.
+ */
+public final class DirectoryScanner {
+    public static final long DEFAULT_MAP_THRESHOLD = 64L << 20;
+
+    static final int BINARY_PROBE = 8192;
+    static final int READ_CHUNK = 1 << 20;
+    // output chars a worker collects before handing them to the writer
+    static final int FLUSH_CHARS = 1 << 16;
+
+    private static final int QUEUE_PER_WORKER = 64;
+    // queue markers, compared by identity
+    private static final Path END_OF_FILES = Paths.get("");
+    private static final String END_OF_OUTPUT = new String();
+
+    private final CompiledPattern pattern;
+    private final int workers;
+    private final long mapThreshold;
+    private final long windowSize;
+
+    public DirectoryScanner(String pattern, int workers) {
+        this(pattern, workers, DEFAULT_MAP_THRESHOLD);
+    }
+
+    // files larger than mapThreshold bytes are memory-mapped, smaller ones are read
+    public DirectoryScanner(String pattern, int workers, long mapThreshold) {
+        this(pattern, workers, mapThreshold, MappedFileSearch.WINDOW_SIZE);
+    }
+
+    DirectoryScanner(String pattern, int workers, long mapThreshold, long windowSize) {
+        if (pattern == null || pattern.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Pattern must be non-null and cannot contain a line break");
+        }
+        if (workers < 1 || mapThreshold < 0 || windowSize < 1 || windowSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid scanner settings: workers " + workers
+                    + ", map threshold " + mapThreshold + ", window " + windowSize);
+        }
+        // byte mode as with compileBytes, on the Horspool engine
+        this.pattern = KMPAlgorithm.compile(new String(pattern.getBytes(StandardCharsets.UTF_8),
+                StandardCharsets.ISO_8859_1), Engine.HORSPOOL);
+        this.workers = workers;
+        this.mapThreshold = mapThreshold;
+        this.windowSize = windowSize;
+    }
+
+    public static final class Summary {
+        private final long files;
+        private final long binaryFiles;
+        private final long bytes;
+        private final long matchingLines;
+        private final List<String> errors;
+        private final long elapsedNanos;
+
+        Summary(long files, long binaryFiles, long bytes, long matchingLines, List<String> errors, long elapsedNanos) {
+            this.files = files;
+            this.binaryFiles = binaryFiles;
+            this.bytes = bytes;
+            this.matchingLines = matchingLines;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        // files searched, not counting binary files or files that could not be read
+        public long files() {
+            return files;
+        }
+
+        public long binaryFiles() {
+            return binaryFiles;
+        }
+
+        public long bytes() {
+            return bytes;
+        }
+
+        public long matchingLines() {
+            return matchingLines;
+        }
+
+        // one "path: message" entry per file or directory that could not be read
+        public List<String> errors() {
+            return errors;
+        }
+
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+
+    // searches root, a directory or a single file, and writes matching lines to out.
+    // out is flushed but not closed
+    public Summary scan(Path root, Writer out) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        BlockingQueue<Path> files = new ArrayBlockingQueue<>(QUEUE_PER_WORKER * workers);
+        BlockingQueue<String> output = new ArrayBlockingQueue<>(QUEUE_PER_WORKER * workers);
+        Counters counters = new Counters();
+        ExecutorService executor = Executors.newFixedThreadPool(workers + 1);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                write(output, out, counters);
+                return null;
+            });
+            List<Future<?>> tasks = new ArrayList<>(workers);
+            for (int w = 0; w < workers; w++) {
+                tasks.add(executor.submit(() -> {
+                    new Worker(output, counters).run(files);
+                    return null;
+                }));
+            }
+
+            try {
+                walk(root, files, counters);
+            } finally {
+                for (int w = 0; w < workers; w++) {
+                    files.put(END_OF_FILES);
+                }
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            output.put(END_OF_OUTPUT);
+            writer.get();
+        } catch (ExecutionException e) {
+            Throwable first = counters.failure.get();
+            rethrow(first != null ? first : e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return new Summary(counters.files.get(), counters.binaryFiles.get(), counters.bytes.get(),
+                counters.matchingLines.get(), List.copyOf(counters.errors), System.nanoTime() - start);
+    }
+
+    // throws t, which is an IOException, InterruptedException or unchecked
+    private static void rethrow(Throwable t) throws IOException, InterruptedException {
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        }
+        if (t instanceof InterruptedException) {
+            throw (InterruptedException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw (RuntimeException) t;
+    }
+
+    private static void walk(Path root, BlockingQueue<Path> files, Counters counters) throws IOException, InterruptedException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (counters.failure.get() != null) {
+                    return FileVisitResult.TERMINATE;
+                }
+                if (!attributes.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                try {
+                    files.put(file);
+                    return FileVisitResult.CONTINUE;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return FileVisitResult.TERMINATE;
+                }
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                counters.errors.add(file + ": " + e);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException e) {
+                if (e != null) {
+                    counters.errors.add(directory + ": " + e);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        if (Thread.interrupted()) {
+            throw new InterruptedException("Directory walk interrupted");
+        }
+    }
+
+    // runs on the writer thread. after a write error the queue is still drained,
+    // so workers never block on a writer that has given up
+    private static void write(BlockingQueue<String> output, Writer out, Counters counters)
+            throws IOException, InterruptedException {
+        Writer writer = out instanceof BufferedWriter ? out : new BufferedWriter(out, FLUSH_CHARS);
+        Throwable failure = null;
+        for (String chunk = output.take(); chunk != END_OF_OUTPUT; chunk = output.take()) {
+            if (failure == null) {
+                try {
+                    writer.write(chunk);
+                } catch (Throwable e) {
+                    failure = e;
+                    counters.fail(e);
+                }
+            }
+        }
+        if (failure != null) {
+            rethrow(failure);
+        }
+        writer.flush();
+    }
+
+    private static final class Counters {
+        final AtomicLong files = new AtomicLong();
+        final AtomicLong binaryFiles = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong matchingLines = new AtomicLong();
+        final ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+        // the first failure that stops the scan
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        void fail(Throwable t) {
+            failure.compareAndSet(null, t);
+        }
+    }
+
+    // one per worker thread; the read buffer and output builder are reused across files
+    private final class Worker {
+        private final BlockingQueue<String> output;
+        private final Counters counters;
+        private final StringBuilder lines = new StringBuilder(FLUSH_CHARS);
+        private byte[] buffer;
+        private byte[] lineBytes = new byte[256];
+        private String name;
+        private long matchingLines;
+        // while a line is split across pieces: the byte column of the current piece's start
+        // within the line, and whether the line was already reported
+        private long lineOffset;
+        private boolean lineReported;
+
+        Worker(BlockingQueue<String> output, Counters counters) {
+            this.output = output;
+            this.counters = counters;
+        }
+
+        // after a failure here or elsewhere the remaining files are only taken off the queue,
+        // so the walk never blocks on it, until this worker's end marker
+        void run(BlockingQueue<Path> files) throws InterruptedException {
+            try {
+                for (Path file = files.take(); file != END_OF_FILES; file = files.take()) {
+                    if (counters.failure.get() != null) {
+                        continue;
+                    }
+                    try {
+                        scan(file);
+                    } catch (IOException | UncheckedIOException e) {
+                        counters.errors.add(file + ": " + e);
+                    }
+                    flush();
+                }
+            } catch (Throwable t) {
+                // an interrupt comes from shutdownNow, when nobody is left to send the end marker
+                if (!(t instanceof InterruptedException)) {
+                    counters.fail(t);
+                    while (files.take() != END_OF_FILES) {
+                        // drained unread
+                    }
+                }
+                throw t;
+            } finally {
+                counters.matchingLines.addAndGet(matchingLines);
+            }
+        }
+
+        private void scan(Path file) throws IOException, InterruptedException {
+            name = file.toString();
+            lineOffset = 0;
+            lineReported = false;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > mapThreshold) {
+                    scanMapped(channel, size);
+                } else {
+                    scanRead(channel);
+                }
+            }
+        }
+
+        // reads the file in READ_CHUNK pieces, each searched up to its last line break;
+        // the partial line after it is moved to the front and completed by the next read.
+        // a chunk without a line break is searched whole and its last m - 1 bytes are kept
+        private void scanRead(FileChannel channel) throws IOException, InterruptedException {
+            if (buffer == null) {
+                buffer = new byte[READ_CHUNK];
+            }
+            ByteBuffer chunk = ByteBuffer.wrap(buffer);
+            long line = 1;
+            long bytes = 0;
+            int carry = 0;
+            boolean eof = false;
+            while (!eof) {
+                chunk.clear().position(carry);
+                while (chunk.hasRemaining() && !eof) {
+                    eof = channel.read(chunk) < 0;
+                }
+                int filled = chunk.position();
+                if (bytes == 0 && isBinary(chunk, filled)) {
+                    counters.binaryFiles.incrementAndGet();
+                    return;
+                }
+                bytes += filled - carry;
+                int end = filled;
+                int next = filled;
+                boolean split = false;
+                if (!eof) {
+                    int lastBreak = lastIndexOf(chunk, (byte) '\n', carry, filled);
+                    split = lastBreak < 0;
+                    next = split ? splitAt(filled) : lastBreak + 1;
+                    end = split ? filled : next;
+                }
+                long reported = matchingLines;
+                line = scanRegion(chunk, end, line, !eof);
+                trackSplit(split, reported, next);
+                carry = filled - next;
+                System.arraycopy(buffer, next, buffer, 0, carry);
+            }
+            counters.files.incrementAndGet();
+            counters.bytes.addAndGet(bytes);
+        }
+
+        private void scanMapped(FileChannel channel, long size) throws IOException, InterruptedException {
+            long line = 1;
+            for (long start = 0; start < size; ) {
+                long length = Math.min(windowSize, size - start);
+                ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                if (start == 0 && isBinary(window, (int) length)) {
+                    counters.binaryFiles.incrementAndGet();
+                    return;
+                }
+                int end = (int) length;
+                int next = end;
+                boolean last = start + length == size;
+                boolean split = false;
+                if (!last) {
+                    // stop at the last line break so no line is split between windows;
+                    // a line longer than a window is split with an overlap
+                    int lastBreak = lastIndexOf(window, (byte) '\n', 0, end);
+                    split = lastBreak < 0;
+                    next = split ? splitAt(end) : lastBreak + 1;
+                    end = split ? end : next;
+                }
+                long reported = matchingLines;
+                line = scanRegion(window, end, line, !last);
+                trackSplit(split, reported, next);
+                start += next;
+            }
+            counters.files.incrementAndGet();
+            counters.bytes.addAndGet(size);
+        }
+
+        // where the next piece starts when text[0, length) is part of one line: m - 1 bytes
+        // before the end, so a match across the cut is found, but always at least one byte on
+        private int splitAt(int length) {
+            return length - Math.max(0, Math.min(pattern.length() - 1, length - 1));
+        }
+
+        // after a piece is scanned: if it was part of a split line, the next piece starts next
+        // bytes further into that line, otherwise it starts a line
+        private void trackSplit(boolean split, long reported, int next) {
+            if (split) {
+                lineReported |= matchingLines != reported;
+                lineOffset += next;
+            } else {
+                lineReported = false;
+                lineOffset = 0;
+            }
+        }
+
+        // reports the matching lines of text[0, to), which starts lineOffset bytes into a line,
+        // and returns the line number after it. matches never span lines, so every line can
+        // start at j = 0
+        private long scanRegion(ByteBuffer text, int to, long line, boolean countRest) throws InterruptedException {
+            int m = pattern.length();
+            int counted = 0;
+            int position = 0;
+            if (lineReported) {
+                // the rest of a split line that was already reported
+                int lineEnd = indexOf(text, (byte) '\n', 0, to);
+                if (lineEnd == to) {
+                    return line;
+                }
+                line++;
+                counted = lineEnd + 1;
+                position = counted;
+            }
+            while (position < to) {
+                text.limit(to).position(position);
+                int hit = pattern.indexOf(text);
+                if (hit < 0) {
+                    break;
+                }
+                // line numbers are only counted up to a match, so files without one cost nothing extra
+                int lineStart = counted;
+                for (int i = indexOf(text, (byte) '\n', counted, hit); i < hit; i = indexOf(text, (byte) '\n', i + 1, hit)) {
+                    line++;
+                    lineStart = i + 1;
+                }
+                int lineEnd = indexOf(text, (byte) '\n', hit + m, to);
+                long offset = lineStart == 0 ? lineOffset : 0;
+                append(text, line, offset + hit - lineStart + 1, lineStart, lineEnd);
+                if (lineEnd == to) {
+                    return line;
+                }
+                line++;
+                counted = lineEnd + 1;
+                position = counted;
+            }
+            if (countRest) {
+                for (int i = indexOf(text, (byte) '\n', counted, to); i < to; i = indexOf(text, (byte) '\n', i + 1, to)) {
+                    line++;
+                }
+            }
+            return line;
+        }
+
+        private void append(ByteBuffer text, long line, long column, int lineStart, int lineEnd) throws InterruptedException {
+            int length = lineEnd - lineStart;
+            String decoded;
+            if (text.hasArray()) {
+                decoded = new String(text.array(), text.arrayOffset() + lineStart, length, StandardCharsets.UTF_8);
+            } else {
+                // copied out of the mapping first: decoding a heap array is much faster than a direct buffer
+                if (lineBytes.length < length) {
+                    lineBytes = new byte[Math.max(length, 2 * lineBytes.length)];
+                }
+                text.limit(lineEnd).position(lineStart);
+                text.get(lineBytes, 0, length);
+                decoded = new String(lineBytes, 0, length, StandardCharsets.UTF_8);
+            }
+            lines.append(name).append(':').append(line).append(':').append(column).append(':')
+                    .append(decoded).append('\n');
+            matchingLines++;
+            if (lines.length() >= FLUSH_CHARS) {
+                flush();
+            }
+        }
+
+        private void flush() throws InterruptedException {
+            if (lines.length() > 0) {
+                output.put(lines.toString());
+                lines.setLength(0);
+            }
+        }
+    }
+
+    private static boolean isBinary(ByteBuffer text, int length) {
+        return indexOf(text, (byte) 0, 0, Math.min(length, BINARY_PROBE)) < Math.min(length, BINARY_PROBE);
+    }
+
+    // index of the first b in text[from, to), or to
+    private static int indexOf(ByteBuffer text, byte b, int from, int to) {
+        if (text.hasArray()) {
+            int base = text.arrayOffset();
+            int index = BytePrefilter.indexOf(text.array(), base + from, base + to, b);
+            return index < 0 ? to : index - base;
+        }
+        for (int i = from; i < to; i++) {
+            if (text.get(i) == b) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    // index of the last b in text[from, to), or -1
+    private static int lastIndexOf(ByteBuffer text, byte b, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (text.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
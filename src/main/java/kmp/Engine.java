@@ -0,0 +1,21 @@
+package kmp;
+
+/**
+ * Scanning strategy used by a {@link CompiledPattern}.
+ * HORSPOOL and INDEX_OF only apply to String texts without case folding or code-point mode,
+ * and HORSPOOL also to indexOf on bytes; every other input is scanned by the KMP state machine.
+ */
+public enum Engine {
+    // classic KMP: follows the lps chain on mismatch
+    LPS,
+    // full state x byte transition table built from the lps array, one lookup per character.
+    // only used for patterns made of chars below 256 whose table fits the memory cap
+    AUTOMATON,
+    // Boyer-Moore-Horspool bad-character skips. switches to KMP for the rest of the text
+    // once it has done more comparisons than a linear scan would, so the worst case stays O(n + m)
+    HORSPOOL,
+    // String.indexOf, an intrinsic on most JVMs. worst case O(n * m), so AUTO only picks it for short patterns
+    INDEX_OF,
+    // picks one of the engines above from the pattern's length and periodicity
+    AUTO
+}
@@ -0,0 +1,209 @@
+package kmp;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The lps (failure) table of a compiled pattern, stored in the narrowest unsigned width
+ * that holds its largest value: 1 byte per entry for patterns up to 256 chars, 2 bytes up
+ * to 65536 and 4 bytes beyond. Lps values are always below the pattern length, so the
+ * width follows from the table itself.
+ *
+ * The table lives in a byte[], short[] or int[] on the heap, or in a direct buffer in
+ * native byte order when built off-heap, or in place inside a mapped PatternStore file.
+ * Single entries are read through {@link #get(int)}. Scans walk whole failure chains
+ * through {@link #follow(char[], int, char)}, which branches on the variant once per call
+ * and then runs a loop over that variant's own array.
+ */
+final class FailureTable {
+    static final FailureTable EMPTY = new FailureTable(new int[0], false);
+
+    private final int length;
+    private final int width;
+    private final byte[] bytes;
+    private final short[] shorts;
+    private final int[] ints;
+    private final ByteBuffer direct;
+
+    FailureTable(int[] lps, boolean offHeap) {
+        this(lps, lps.length, offHeap);
+    }
+
+    // the table of the first length entries of lps
+    FailureTable(int[] lps, int length, boolean offHeap) {
+        this(length, widthFor(max(lps, length)), offHeap);
+        for (int k = 0; k < length; k++) {
+            set(k, lps[k]);
+        }
+    }
+
+    // an all-zero table of the given width
+    private FailureTable(int length, int width, boolean offHeap) {
+        this.length = length;
+        this.width = width;
+        this.direct = offHeap ? ByteBuffer.allocateDirect(length * width).order(ByteOrder.nativeOrder()) : null;
+        this.bytes = !offHeap && width == Byte.BYTES ? new byte[length] : null;
+        this.shorts = !offHeap && width == Short.BYTES ? new short[length] : null;
+        this.ints = !offHeap && width == Integer.BYTES ? new int[length] : null;
+    }
+
+    // computes the lps table of chars straight into the narrowest storage, with no int[] scratch.
+    // values stay below the pattern length, so the table is first built at the width that length
+    // needs and copied into a narrower one only when every border turns out shorter
+    static FailureTable of(char[] chars, boolean offHeap) {
+        if (chars.length == 0) {
+            return EMPTY;
+        }
+        FailureTable table = new FailureTable(chars.length, widthFor(chars.length - 1), offHeap);
+        int max = 0;
+        int len = 0;
+        int i = 1;
+        while (i < chars.length) {
+            if (chars[i] == chars[len]) {
+                len++;
+                table.set(i, len);
+                max = Math.max(max, len);
+                i++;
+            } else if (len != 0) {
+                len = table.get(len - 1);
+            } else {
+                i++;
+            }
+        }
+        int width = widthFor(max);
+        if (width == table.width) {
+            return table;
+        }
+        FailureTable narrow = new FailureTable(chars.length, width, offHeap);
+        for (int k = 0; k < chars.length; k++) {
+            narrow.set(k, table.get(k));
+        }
+        return narrow;
+    }
+
+    // wraps width-byte entries already laid out in the buffer's byte order, such as a region
+    // of a mapped file. the entries are read in place, not copied
+    FailureTable(ByteBuffer buffer, int width, int length) {
+        if (width != Byte.BYTES && width != Short.BYTES && width != Integer.BYTES) {
+            throw new IllegalArgumentException("Unsupported width: " + width);
+        }
+        if ((long) length * width > buffer.remaining()) {
+            throw new IllegalArgumentException("Buffer holds fewer than " + length + " entries");
+        }
+        ByteOrder order = buffer.order();
+        this.length = length;
+        this.width = width;
+        this.bytes = null;
+        this.shorts = null;
+        this.ints = null;
+        this.direct = buffer.slice().order(order);
+    }
+
+    static int widthFor(int maxValue) {
+        if (maxValue <= 0xFF) {
+            return Byte.BYTES;
+        }
+        return maxValue <= 0xFFFF ? Short.BYTES : Integer.BYTES;
+    }
+
+    private static int max(int[] lps, int length) {
+        int max = 0;
+        for (int k = 0; k < length; k++) {
+            max = Math.max(max, lps[k]);
+        }
+        return max;
+    }
+
+    int get(int k) {
+        if (direct != null) {
+            if (width == Byte.BYTES) {
+                return direct.get(k) & 0xFF;
+            }
+            return width == Short.BYTES ? direct.getShort(k << 1) & 0xFFFF : direct.getInt(k << 2);
+        }
+        if (bytes != null) {
+            return bytes[k] & 0xFF;
+        }
+        return shorts != null ? shorts[k] & 0xFFFF : ints[k];
+    }
+
+    // follows failure links from state j until chars[j] == c or the initial state is reached.
+    // a scan on the byte[] variant runs the same loop it would on an int[]; only direct
+    // and mapped tables go through get
+    int follow(char[] chars, int j, char c) {
+        if (bytes != null) {
+            while (j > 0 && chars[j] != c) {
+                j = bytes[j - 1] & 0xFF;
+            }
+        } else if (shorts != null) {
+            while (j > 0 && chars[j] != c) {
+                j = shorts[j - 1] & 0xFFFF;
+            }
+        } else if (ints != null) {
+            while (j > 0 && chars[j] != c) {
+                j = ints[j - 1];
+            }
+        } else {
+            while (j > 0 && chars[j] != c) {
+                j = get(j - 1);
+            }
+        }
+        return j;
+    }
+
+    private void set(int k, int value) {
+        if (direct != null) {
+            put(direct, k * width, width, value);
+        } else if (bytes != null) {
+            bytes[k] = (byte) value;
+        } else if (shorts != null) {
+            shorts[k] = (short) value;
+        } else {
+            ints[k] = value;
+        }
+    }
+
+    int length() {
+        return length;
+    }
+
+    // bytes per entry: 1, 2 or 4
+    int width() {
+        return width;
+    }
+
+    boolean isDirect() {
+        return direct != null;
+    }
+
+    long sizeBytes() {
+        return (long) length * width;
+    }
+
+    int[] toArray() {
+        int[] lps = new int[length];
+        for (int k = 0; k < length; k++) {
+            lps[k] = get(k);
+        }
+        return lps;
+    }
+
+    // appends the entries as width-byte values in the byte order of out
+    void writeTo(ByteBuffer out) {
+        int base = out.position();
+        for (int k = 0; k < length; k++) {
+            put(out, base + k * width, width, get(k));
+        }
+        out.position(base + length * width);
+    }
+
+    private static void put(ByteBuffer buffer, int index, int width, int value) {
+        if (width == Byte.BYTES) {
+            buffer.put(index, (byte) value);
+        } else if (width == Short.BYTES) {
+            buffer.putShort(index, (short) value);
+        } else {
+            buffer.putInt(index, value);
+        }
+    }
+}
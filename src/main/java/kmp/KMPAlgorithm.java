@@ -1,11 +1,24 @@
 package kmp;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
 /**
  * KMP (Knuth-Morris-Pratt)
  * Time Complexity: O(n + m)
  * Space Complexity: O(m)
  */
 public class KMPAlgorithm {
+    private static volatile PatternCache cache;
+    // read by CompiledPattern on every metered call, null when metrics are off
+    static volatile SearchMetrics metrics;
+
     // computes the Longest Proper Prefix
     public static int[] computeLPSArray(String pattern) {
         int m = pattern.length();
@@ -33,90 +46,268 @@ public class KMPAlgorithm {
 
         return lps;
     }
-    public static int search(String text, String pattern) {
-        if (text == null) {
-            return -1;
-        }
-        if (pattern == null || pattern.isEmpty()) {
-            return 0;
-        }
-        if (text.isEmpty()) {
-            return -1;
-        }
-        if (pattern.length() > text.length()) {
-            return -1;
+
+    public static int[] computeLPSArray(char[] pattern, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, pattern.length);
+        int[] lps = new int[length];
+
+        int len = 0;
+        int i = 1;
+        while (i < length) {
+            if (pattern[offset + i] == pattern[offset + len]) {
+                len++;
+                lps[i] = len;
+                i++;
+            } else if (len != 0) {
+                len = lps[len - 1];
+            } else {
+                lps[i] = 0;
+                i++;
+            }
         }
 
-        int n = text.length();
+        return lps;
+    }
+
+    public static int[] computeLPSArray(CharSequence pattern) {
         int m = pattern.length();
+        int[] lps = new int[m];
 
-        int[] lps = computeLPSArray(pattern);
+        int len = 0;
+        int i = 1;
+        while (i < m) {
+            if (pattern.charAt(i) == pattern.charAt(len)) {
+                len++;
+                lps[i] = len;
+                i++;
+            } else if (len != 0) {
+                len = lps[len - 1];
+            } else {
+                lps[i] = 0;
+                i++;
+            }
+        }
 
-        int i = 0;
-        int j = 0;
+        return lps;
+    }
 
-        while (i < n) {
-            if (pattern.charAt(j) == text.charAt(i)) {
+    public static int[] computeLPSArray(byte[] pattern, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, pattern.length);
+        int[] lps = new int[length];
+
+        int len = 0;
+        int i = 1;
+        while (i < length) {
+            if (pattern[offset + i] == pattern[offset + len]) {
+                len++;
+                lps[i] = len;
+                i++;
+            } else if (len != 0) {
+                len = lps[len - 1];
+            } else {
+                lps[i] = 0;
                 i++;
-                j++;
             }
+        }
 
-            if (j == m) {
-                return i - j;
-            } else if (i < n && pattern.charAt(j) != text.charAt(i)) {
-                if (j != 0) {
-                    j = lps[j - 1];
-                } else {
-                    i++;
-                }
+        return lps;
+    }
+
+    // reads the bytes between position and limit without moving the position
+    public static int[] computeLPSArray(ByteBuffer pattern) {
+        if (pattern.hasArray()) {
+            return computeLPSArray(pattern.array(), pattern.arrayOffset() + pattern.position(), pattern.remaining());
+        }
+        int offset = pattern.position();
+        int length = pattern.remaining();
+        int[] lps = new int[length];
+
+        int len = 0;
+        int i = 1;
+        while (i < length) {
+            if (pattern.get(offset + i) == pattern.get(offset + len)) {
+                len++;
+                lps[i] = len;
+                i++;
+            } else if (len != 0) {
+                len = lps[len - 1];
+            } else {
+                lps[i] = 0;
+                i++;
             }
         }
 
-        return -1;
+        return lps;
+    }
+
+    // routes the static String-pattern methods through the cache, or disables caching when null
+    public static void setPatternCache(PatternCache patternCache) {
+        cache = patternCache;
+    }
+
+    public static PatternCache patternCache() {
+        return cache;
+    }
+
+    // starts recording String searches into the given metrics, or stops recording when null
+    public static void setMetrics(SearchMetrics searchMetrics) {
+        metrics = searchMetrics;
+    }
+
+    public static SearchMetrics metrics() {
+        return metrics;
+    }
+
+    private static CompiledPattern compileCached(String pattern) {
+        PatternCache current = cache;
+        return current != null ? current.get(pattern) : compile(pattern);
+    }
+
+    // byte patterns share the cache under their ISO-8859-1 string, which is what compileBytes compiles
+    private static CompiledPattern compileBytesCached(byte[] pattern) {
+        return compileCached(pattern == null ? "" : new String(pattern, StandardCharsets.ISO_8859_1));
+    }
+
+    // compiles the pattern once so it can be reused across many texts and threads.
+    // a null pattern is treated as empty
+    public static CompiledPattern compile(String pattern) {
+        return new CompiledPattern(pattern == null ? "" : pattern);
+    }
+
+    // compiles a byte sequence for byte-mode matching, where every byte b is read as the char (b & 0xFF)
+    public static CompiledPattern compileBytes(byte[] pattern) {
+        return compile(pattern == null ? "" : new String(pattern, StandardCharsets.ISO_8859_1));
+    }
+
+    // builds one automaton that finds all of the patterns in a single pass over the text
+    public static MultiPatternMatcher compileAll(List<String> patterns) {
+        return MultiPatternMatcher.compile(patterns);
+    }
+
+    // compiles a pattern with ? wildcards and [a-z] style classes, see WildcardPattern
+    public static WildcardPattern compileWildcard(String pattern) {
+        return WildcardPattern.compile(pattern);
+    }
+
+    public static CompiledPattern compile(String pattern, Engine engine) {
+        return compile(pattern, engine, CompiledPattern.DEFAULT_AUTOMATON_LIMIT);
+    }
+
+    // patterns whose automaton would exceed maxAutomatonBytes fall back to the lps engine
+    public static CompiledPattern compile(String pattern, Engine engine, long maxAutomatonBytes) {
+        return compile(pattern, MatchOptions.DEFAULT.withEngine(engine).withAutomatonLimit(maxAutomatonBytes));
+    }
+
+    // compiles with case folding, code-point mode and engine selection, see MatchOptions
+    public static CompiledPattern compile(String pattern, MatchOptions options) {
+        return new CompiledPattern(pattern == null ? "" : pattern, options);
+    }
+
+    public static int search(String text, String pattern) {
+        if (text == null) {
+            return -1;
+        }
+        if (pattern == null || pattern.isEmpty()) {
+            return 0;
+        }
+
+        return compileCached(pattern).indexOf(text);
     }
 
     public static int[] searchAll(String text, String pattern) {
         if (pattern == null || pattern.isEmpty() || text == null || text.isEmpty()) {
             return new int[0];
         }
-        if (pattern.length() > text.length()) {
-            return new int[0];
+
+        return compileCached(pattern).findAll(text);
+    }
+
+    // streams every match into the sink without allocating a result array
+    public static int searchAll(String text, String pattern, MatchSink sink) {
+        if (pattern == null || pattern.isEmpty() || text == null || text.isEmpty()) {
+            return 0;
         }
 
-        int n = text.length();
-        int m = pattern.length();
+        return compileCached(pattern).findAll(text, sink);
+    }
 
-        int[] lps = computeLPSArray(pattern);
+    public static int count(String text, String pattern) {
+        if (pattern == null || pattern.isEmpty() || text == null || text.isEmpty()) {
+            return 0;
+        }
 
-        java.util.ArrayList<Integer> matches = new java.util.ArrayList<>();
+        return compileCached(pattern).count(text);
+    }
 
-        int i = 0;
-        int j = 0;
+    // overloads for texts that are not Strings. results are indices into the array or buffer,
+    // and an empty pattern matches at the start of the range
 
-        while (i < n) {
-            if (pattern.charAt(j) == text.charAt(i)) {
-                i++;
-                j++;
-            }
+    public static int search(char[] text, int offset, int length, String pattern) {
+        return compileCached(pattern).indexOf(text, offset, length);
+    }
 
-            if (j == m) {
-                matches.add(i - j);
-                j = lps[j - 1];
-            } else if (i < n && pattern.charAt(j) != text.charAt(i)) {
-                if (j != 0) {
-                    j = lps[j - 1];
-                } else {
-                    i++;
-                }
-            }
-        }
+    public static int[] searchAll(char[] text, int offset, int length, String pattern) {
+        MatchBuffer matches = new MatchBuffer();
+        compileCached(pattern).findAll(text, offset, length, matches);
+        return matches.toArray();
+    }
 
-        int[] result = new int[matches.size()];
-        for (int k = 0; k < matches.size(); k++) {
-            result[k] = matches.get(k);
+    public static int search(CharSequence text, String pattern) {
+        if (text == null) {
+            return -1;
         }
+        return compileCached(pattern).indexOf(text);
+    }
+
+    public static int[] searchAll(CharSequence text, String pattern) {
+        MatchBuffer matches = new MatchBuffer();
+        compileCached(pattern).findAll(text, matches);
+        return matches.toArray();
+    }
+
+    public static int search(byte[] text, int offset, int length, byte[] pattern) {
+        return compileBytesCached(pattern).indexOf(text, offset, length);
+    }
+
+    public static int[] searchAll(byte[] text, int offset, int length, byte[] pattern) {
+        MatchBuffer matches = new MatchBuffer();
+        compileBytesCached(pattern).findAll(text, offset, length, matches);
+        return matches.toArray();
+    }
+
+    // searches between position and limit of a heap or direct buffer, leaving its position unchanged
+    public static int search(ByteBuffer text, byte[] pattern) {
+        return compileBytesCached(pattern).indexOf(text);
+    }
+
+    public static int[] searchAll(ByteBuffer text, byte[] pattern) {
+        MatchBuffer matches = new MatchBuffer();
+        compileBytesCached(pattern).findAll(text, matches);
+        return matches.toArray();
+    }
+
+    // finds the first byte offset of the UTF-8 encoded pattern in a memory-mapped file, or -1
+    public static long searchFile(Path file, String pattern) throws IOException {
+        return searchFile(file, compileBytesCached(utf8(pattern)));
+    }
+
+    // the compiled pattern is matched in byte mode, see compileBytes
+    public static long searchFile(Path file, CompiledPattern pattern) throws IOException {
+        return MappedFileSearch.indexOf(file, pattern, MappedFileSearch.WINDOW_SIZE);
+    }
+
+    public static long[] searchAllFile(Path file, String pattern) throws IOException {
+        LongStream.Builder matches = LongStream.builder();
+        searchAllFile(file, compileBytesCached(utf8(pattern)), matches);
+        return matches.build().toArray();
+    }
+
+    public static long searchAllFile(Path file, CompiledPattern pattern, LongConsumer sink) throws IOException {
+        return MappedFileSearch.findAll(file, pattern, sink, MappedFileSearch.WINDOW_SIZE);
+    }
 
-        return result;
+    private static byte[] utf8(String pattern) {
+        return pattern == null ? new byte[0] : pattern.getBytes(StandardCharsets.UTF_8);
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,110 @@
+package kmp;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of non-negative values, in the style of HdrHistogram.
+ *
+ * Values below 64 get a bucket each; above that every power of two is split into 32
+ * buckets, so a recorded value is reported within about 3% of its true value over the
+ * whole long range. All buckets are allocated up front (about 15 KB) and recording is a
+ * single atomic add, so it never allocates and is safe from any number of threads.
+ */
+public final class LatencyHistogram {
+    // 2^SUB_BITS buckets below 2^SUB_BITS, then 2^(SUB_BITS - 1) buckets per power of two
+    private static final int SUB_BITS = 6;
+    private static final int HALF = 1 << (SUB_BITS - 1);
+    static final int BUCKETS = bucket(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    // negative values are recorded as 0
+    public void record(long value) {
+        counts.incrementAndGet(bucket(Math.max(0, value)));
+    }
+
+    public long count() {
+        long total = 0;
+        for (int k = 0; k < BUCKETS; k++) {
+            total += counts.get(k);
+        }
+        return total;
+    }
+
+    // the largest value that falls in the same bucket as the given percentile, or 0 when empty.
+    // concurrent records may or may not be seen
+    public long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be within [0, 100]: " + percentile);
+        }
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int k = 0; k < BUCKETS; k++) {
+            snapshot[k] = counts.get(k);
+            total += snapshot[k];
+        }
+        return valueAt(snapshot, total, percentile);
+    }
+
+    public long max() {
+        for (int k = BUCKETS - 1; k >= 0; k--) {
+            if (counts.get(k) != 0) {
+                return highestValue(k);
+            }
+        }
+        return 0;
+    }
+
+    public void reset() {
+        for (int k = 0; k < BUCKETS; k++) {
+            counts.set(k, 0);
+        }
+    }
+
+    // copies the counts once and reads several percentiles from the same copy
+    long[] percentiles(double... percentiles) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int k = 0; k < BUCKETS; k++) {
+            snapshot[k] = counts.get(k);
+            total += snapshot[k];
+        }
+        long[] values = new long[percentiles.length];
+        for (int p = 0; p < percentiles.length; p++) {
+            values[p] = valueAt(snapshot, total, percentiles[p]);
+        }
+        return values;
+    }
+
+    private static long valueAt(long[] snapshot, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int k = 0; k < snapshot.length; k++) {
+            seen += snapshot[k];
+            if (seen >= rank) {
+                return highestValue(k);
+            }
+        }
+        return highestValue(snapshot.length - 1);
+    }
+
+    static int bucket(long value) {
+        // magnitude is at least SUB_BITS - 1, so small values land in shift 0 one per bucket
+        int magnitude = 63 - Long.numberOfLeadingZeros(value | (2 * HALF - 1));
+        int shift = magnitude - (SUB_BITS - 1);
+        return (shift << (SUB_BITS - 1)) + (int) (value >>> shift);
+    }
+
+    static long lowestValue(int bucket) {
+        int shift = bucket < 2 * HALF ? 0 : (bucket >> (SUB_BITS - 1)) - 1;
+        return (long) (bucket - (shift << (SUB_BITS - 1))) << shift;
+    }
+
+    static long highestValue(int bucket) {
+        int shift = bucket < 2 * HALF ? 0 : (bucket >> (SUB_BITS - 1)) - 1;
+        return lowestValue(bucket) + (1L << shift) - 1;
+    }
+}
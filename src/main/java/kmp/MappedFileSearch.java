@@ -0,0 +1,55 @@
+package kmp;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongConsumer;
+
+/**
+ * Byte-mode search over memory-mapped files. The file is mapped in windows of at
+ * most {@link #WINDOW_SIZE} bytes and the matcher state is carried from one window
+ * to the next, so files larger than 2 GB work and matches crossing a window
+ * boundary are found. Nothing is decoded or copied onto the heap.
+ */
+final class MappedFileSearch {
+    static final long WINDOW_SIZE = 1L << 30;
+
+    private MappedFileSearch() {
+    }
+
+    static long indexOf(Path file, CompiledPattern pattern, long windowSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (pattern.length() == 0) {
+                return 0;
+            }
+
+            StreamMatcher matcher = pattern.matcher();
+            for (long start = 0; start < size; start += windowSize) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(windowSize, size - start));
+                long offset = matcher.find(window);
+                if (offset != -1) {
+                    return offset;
+                }
+            }
+            return -1;
+        }
+    }
+
+    static long findAll(Path file, CompiledPattern pattern, LongConsumer sink, long windowSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            StreamMatcher matcher = pattern.matcher();
+            long count = 0;
+            for (long start = 0; start < size; start += windowSize) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(windowSize, size - start));
+                count += matcher.feed(window, sink);
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package kmp;
+
+import java.util.Arrays;
+
+/**
+ * Growable int buffer for match offsets. Call {@link #clear()} between searches
+ * to reuse the backing array instead of allocating a new result every time.
+ * Not thread-safe.
+ */
+public final class MatchBuffer implements MatchSink {
+    private int[] offsets;
+    private int size;
+
+    public MatchBuffer() {
+        this(16);
+    }
+
+    public MatchBuffer(int initialCapacity) {
+        this.offsets = new int[Math.max(1, initialCapacity)];
+    }
+
+    @Override
+    public void onMatch(int offset) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        offsets[size++] = offset;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return offsets[index];
+    }
+
+    // keeps the backing array so the next search does not allocate
+    public void clear() {
+        size = 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(offsets, size);
+    }
+}
@@ -0,0 +1,114 @@
+package kmp;
+
+/**
+ * Immutable set of options for {@link KMPAlgorithm#compile(String, MatchOptions)}.
+ * Start from {@link #DEFAULT} and derive variants with the with* methods.
+ */
+public final class MatchOptions {
+    public static final MatchOptions DEFAULT =
+            new MatchOptions(Engine.LPS, CompiledPattern.DEFAULT_AUTOMATON_LIMIT, CaseFolding.NONE, false, false, false);
+
+    private final Engine engine;
+    private final long automatonLimit;
+    private final CaseFolding caseFolding;
+    private final boolean codePoints;
+    private final boolean prefilter;
+    private final boolean offHeap;
+
+    private MatchOptions(Engine engine, long automatonLimit, CaseFolding caseFolding, boolean codePoints,
+                         boolean prefilter, boolean offHeap) {
+        this.engine = engine;
+        this.automatonLimit = automatonLimit;
+        this.caseFolding = caseFolding;
+        this.codePoints = codePoints;
+        this.prefilter = prefilter;
+        this.offHeap = offHeap;
+    }
+
+    public Engine engine() {
+        return engine;
+    }
+
+    public long automatonLimit() {
+        return automatonLimit;
+    }
+
+    public CaseFolding caseFolding() {
+        return caseFolding;
+    }
+
+    // in code-point mode surrogate pairs are folded as one character and a match
+    // never starts or ends in the middle of a pair
+    public boolean codePoints() {
+        return codePoints;
+    }
+
+    // while nothing is matched, jump to the next occurrence of the first pattern char with
+    // String.indexOf or a SIMD byte scan instead of stepping one char at a time.
+    // only applies without case folding
+    public boolean prefilter() {
+        return prefilter;
+    }
+
+    // keep the lps table in a direct buffer outside the Java heap. meant for huge patterns
+    // that should not weigh on garbage collection; scans read it through the buffer
+    public boolean offHeap() {
+        return offHeap;
+    }
+
+    public MatchOptions withEngine(Engine engine) {
+        return new MatchOptions(engine, automatonLimit, caseFolding, codePoints, prefilter, offHeap);
+    }
+
+    // patterns whose automaton would exceed this many bytes fall back to the lps engine
+    public MatchOptions withAutomatonLimit(long automatonLimit) {
+        return new MatchOptions(engine, automatonLimit, caseFolding, codePoints, prefilter, offHeap);
+    }
+
+    public MatchOptions withCaseFolding(CaseFolding caseFolding) {
+        return new MatchOptions(engine, automatonLimit, caseFolding, codePoints, prefilter, offHeap);
+    }
+
+    public MatchOptions withCodePoints(boolean codePoints) {
+        return new MatchOptions(engine, automatonLimit, caseFolding, codePoints, prefilter, offHeap);
+    }
+
+    public MatchOptions withPrefilter(boolean prefilter) {
+        return new MatchOptions(engine, automatonLimit, caseFolding, codePoints, prefilter, offHeap);
+    }
+
+    public MatchOptions withOffHeap(boolean offHeap) {
+        return new MatchOptions(engine, automatonLimit, caseFolding, codePoints, prefilter, offHeap);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MatchOptions)) {
+            return false;
+        }
+        MatchOptions other = (MatchOptions) o;
+        return engine == other.engine && automatonLimit == other.automatonLimit
+                && caseFolding == other.caseFolding && codePoints == other.codePoints
+                && prefilter == other.prefilter && offHeap == other.offHeap;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = engine.hashCode();
+        result = 31 * result + Long.hashCode(automatonLimit);
+        result = 31 * result + caseFolding.hashCode();
+        result = 31 * result + (codePoints ? 1 : 0);
+        result = 31 * result + (prefilter ? 1 : 0);
+        return 31 * result + (offHeap ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "MatchOptions[engine=" + engine + ", automatonLimit=" + automatonLimit
+                + ", caseFolding=" + caseFolding + ", codePoints=" + codePoints + ", prefilter=" + prefilter
+                + ", offHeap=" + offHeap + "]";
+    }
+}
@@ -0,0 +1,9 @@
+package kmp;
+
+/**
+ * Receives match offsets as primitive ints, so reporting a match never boxes.
+ */
+@FunctionalInterface
+public interface MatchSink {
+    void onMatch(int offset);
+}
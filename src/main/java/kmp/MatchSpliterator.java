@@ -0,0 +1,111 @@
+package kmp;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Lazy source of match offsets. Each tryAdvance runs the matcher only as far as the next
+ * match, so a consumer that stops early never scans the rest of the text.
+ *
+ * The spliterator owns the matches starting in [position - j, fence), like a
+ * {@link ParallelSearch} segment, and reads up to m - 1 chars past fence so a match crossing
+ * a split point is reported by exactly one half. trySplit hands out the prefix up to the
+ * midpoint with the current state and restarts this one at the midpoint with j = 0.
+ * In code-point mode a split point may fall inside a surrogate pair; a match starting there
+ * would split the pair and is dropped by either half.
+ */
+final class MatchSpliterator implements Spliterator.OfInt {
+    private final CompiledPattern pattern;
+    private final CharSequence text;
+    private final int m;
+    private final int minSplit;
+    private int position;
+    private int j;
+    private int fence;
+
+    MatchSpliterator(CompiledPattern pattern, CharSequence text, int minSplit) {
+        this(pattern, text, minSplit, 0, 0, text.length());
+    }
+
+    private MatchSpliterator(CompiledPattern pattern, CharSequence text, int minSplit, int position, int j, int fence) {
+        this.pattern = pattern;
+        this.text = text;
+        this.m = pattern.length();
+        this.minSplit = Math.max(minSplit, m);
+        this.position = position;
+        this.j = j;
+        this.fence = m == 0 ? position : fence;
+    }
+
+    // last text index + 1 that can end a match starting before fence
+    private int scanEnd() {
+        return (int) Math.min(text.length(), (long) fence + m - 1);
+    }
+
+    @Override
+    public boolean tryAdvance(IntConsumer action) {
+        int end = scanEnd();
+        int i = position;
+        int j = this.j;
+        while (i < end) {
+            j = pattern.next(j, pattern.unitAt(text, i++));
+            if (j == m && pattern.accepts(text, i - m)) {
+                int start = i - m;
+                position = i;
+                this.j = j;
+                action.accept(start);
+                return true;
+            }
+        }
+        position = fence;
+        this.j = 0;
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(IntConsumer action) {
+        int end = scanEnd();
+        int i = position;
+        int j = this.j;
+        // mark the range consumed first, so an exception from the action cannot replay matches
+        position = fence;
+        this.j = 0;
+        for (; i < end; i++) {
+            j = pattern.next(j, pattern.unitAt(text, i));
+            if (j == m && pattern.accepts(text, i - m + 1)) {
+                action.accept(i - m + 1);
+            }
+        }
+    }
+
+    @Override
+    public Spliterator.OfInt trySplit() {
+        int mid = position + (fence - position) / 2;
+        if (mid - position < minSplit || fence - mid < minSplit) {
+            return null;
+        }
+        MatchSpliterator prefix = new MatchSpliterator(pattern, text, minSplit, position, j, mid);
+        position = mid;
+        j = 0;
+        return prefix;
+    }
+
+    // an upper bound: there is at most one match per remaining start position
+    @Override
+    public long estimateSize() {
+        return fence - position + j;
+    }
+
+    @Override
+    public int characteristics() {
+        int characteristics = ORDERED | DISTINCT | SORTED | NONNULL;
+        return text instanceof String ? characteristics | IMMUTABLE : characteristics;
+    }
+
+    // offsets are ints in natural order
+    @Override
+    public Comparator<? super Integer> getComparator() {
+        return null;
+    }
+}
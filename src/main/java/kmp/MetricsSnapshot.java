@@ -0,0 +1,80 @@
+package kmp;
+
+/**
+ * Point-in-time copy of {@link SearchMetrics}. Latencies are in nanoseconds.
+ * Counters are read one after another, so a snapshot taken under load may mix
+ * values from slightly different moments.
+ */
+public final class MetricsSnapshot {
+    private final long calls;
+    private final long charsScanned;
+    private final long matches;
+    private final long failureLinks;
+    private final long horspoolFallbacks;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+
+    MetricsSnapshot(long calls, long charsScanned, long matches, long failureLinks, long horspoolFallbacks,
+                    long[] percentiles, long maxNanos) {
+        this.calls = calls;
+        this.charsScanned = charsScanned;
+        this.matches = matches;
+        this.failureLinks = failureLinks;
+        this.horspoolFallbacks = horspoolFallbacks;
+        this.p50Nanos = percentiles[0];
+        this.p90Nanos = percentiles[1];
+        this.p99Nanos = percentiles[2];
+        this.p999Nanos = percentiles[3];
+        this.maxNanos = maxNanos;
+    }
+
+    public long calls() {
+        return calls;
+    }
+
+    public long charsScanned() {
+        return charsScanned;
+    }
+
+    public long matches() {
+        return matches;
+    }
+
+    public long failureLinks() {
+        return failureLinks;
+    }
+
+    public long horspoolFallbacks() {
+        return horspoolFallbacks;
+    }
+
+    public long p50Nanos() {
+        return p50Nanos;
+    }
+
+    public long p90Nanos() {
+        return p90Nanos;
+    }
+
+    public long p99Nanos() {
+        return p99Nanos;
+    }
+
+    public long p999Nanos() {
+        return p999Nanos;
+    }
+
+    public long maxNanos() {
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot{calls=" + calls + ", charsScanned=" + charsScanned + ", matches=" + matches
+                + ", failureLinks=" + failureLinks + ", horspoolFallbacks=" + horspoolFallbacks + ", p50=" + p50Nanos + "ns, p90=" + p90Nanos
+                + "ns, p99=" + p99Nanos + "ns, p999=" + p999Nanos + "ns, max=" + maxNanos + "ns}";
+    }
+}
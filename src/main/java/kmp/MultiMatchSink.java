@@ -0,0 +1,9 @@
+package kmp;
+
+/**
+ * Receives (patternId, offset) pairs from a {@link MultiPatternMatcher}.
+ */
+@FunctionalInterface
+public interface MultiMatchSink {
+    void onMatch(int patternId, int offset);
+}
@@ -0,0 +1,261 @@
+package kmp;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aho-Corasick automaton: the LPS failure function generalized from a single
+ * pattern to a trie of patterns, so every occurrence of every pattern is found
+ * in one pass over the text, in O(n + total pattern length + matches).
+ *
+ * The trie is stored in flat arrays instead of node objects. Nodes are numbered in
+ * BFS order and the edges of node v are childChar/childNode[childStart[v], childStart[v + 1]),
+ * sorted by char. Each node costs 16 bytes and each edge 6 bytes.
+ * Instances are immutable and thread-safe.
+ */
+public final class MultiPatternMatcher {
+    private static final int ROOT = 0;
+
+    private final String[] patterns;
+    private final int[] childStart;
+    private final char[] childChar;
+    private final int[] childNode;
+    private final int[] fail;
+    // nearest node on the fail chain that ends a pattern, or -1
+    private final int[] dictLink;
+    // ids of the patterns ending exactly at node v are outIds[outStart[v], outStart[v + 1])
+    private final int[] outStart;
+    private final int[] outIds;
+
+    // also used by PatternStore to restore a stored matcher; the arrays are kept, not copied
+    MultiPatternMatcher(String[] patterns, int[] childStart, char[] childChar, int[] childNode,
+                        int[] fail, int[] dictLink, int[] outStart, int[] outIds) {
+        this.patterns = patterns;
+        this.childStart = childStart;
+        this.childChar = childChar;
+        this.childNode = childNode;
+        this.fail = fail;
+        this.dictLink = dictLink;
+        this.outStart = outStart;
+        this.outIds = outIds;
+    }
+
+    // pattern ids are the list indices. null and empty patterns are kept but never match
+    public static MultiPatternMatcher compile(List<String> patterns) {
+        String[] copy = new String[patterns.size()];
+        for (int id = 0; id < copy.length; id++) {
+            String pattern = patterns.get(id);
+            copy[id] = pattern == null ? "" : pattern;
+        }
+        return build(copy);
+    }
+
+    public int patternCount() {
+        return patterns.length;
+    }
+
+    public String pattern(int patternId) {
+        return patterns[patternId];
+    }
+
+    // number of trie nodes, root included
+    public int nodeCount() {
+        return fail.length;
+    }
+
+    // the tables below are handed out as they are for PatternStore, which must not modify them
+
+    int[] childStart() {
+        return childStart;
+    }
+
+    char[] childChar() {
+        return childChar;
+    }
+
+    int[] childNode() {
+        return childNode;
+    }
+
+    int[] fail() {
+        return fail;
+    }
+
+    int[] dictLink() {
+        return dictLink;
+    }
+
+    int[] outStart() {
+        return outStart;
+    }
+
+    int[] outIds() {
+        return outIds;
+    }
+
+    // reports every occurrence of every pattern in text order of match end, and returns the count
+    public int findAll(String text, MultiMatchSink sink) {
+        if (text == null) {
+            return 0;
+        }
+
+        int n = text.length();
+        int count = 0;
+        int state = ROOT;
+        for (int i = 0; i < n; i++) {
+            state = next(state, text.charAt(i));
+            for (int v = outStart[state] < outStart[state + 1] ? state : dictLink[state]; v != -1; v = dictLink[v]) {
+                for (int k = outStart[v]; k < outStart[v + 1]; k++) {
+                    int id = outIds[k];
+                    sink.onMatch(id, i - patterns[id].length() + 1);
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    public int count(String text) {
+        return findAll(text, (patternId, offset) -> { });
+    }
+
+    private int next(int state, char c) {
+        while (true) {
+            int child = child(state, c);
+            if (child != -1) {
+                return child;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    private int child(int node, char c) {
+        int lo = childStart[node];
+        int hi = childStart[node + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char midChar = childChar[mid];
+            if (midChar < c) {
+                lo = mid + 1;
+            } else if (midChar > c) {
+                hi = mid - 1;
+            } else {
+                return childNode[mid];
+            }
+        }
+        return -1;
+    }
+
+    private static MultiPatternMatcher build(String[] patterns) {
+        // 1. insert every pattern into a temporary trie keyed by (node, char)
+        Map<Long, Integer> edges = new HashMap<>();
+        int[] terminal = new int[patterns.length];
+        int nodes = 1;
+        for (int id = 0; id < patterns.length; id++) {
+            String pattern = patterns[id];
+            int node = ROOT;
+            for (int i = 0; i < pattern.length(); i++) {
+                long key = ((long) node << 16) | pattern.charAt(i);
+                Integer child = edges.get(key);
+                if (child == null) {
+                    child = nodes++;
+                    edges.put(key, child);
+                }
+                node = child;
+            }
+            terminal[id] = pattern.isEmpty() ? -1 : node;
+        }
+
+        // 2. group the edges by parent, sorted by char
+        long[] keys = new long[edges.size()];
+        int e = 0;
+        for (long key : edges.keySet()) {
+            keys[e++] = key;
+        }
+        Arrays.sort(keys);
+        int[] firstEdge = new int[nodes + 1];
+        for (long key : keys) {
+            firstEdge[(int) (key >>> 16) + 1]++;
+        }
+        for (int v = 0; v < nodes; v++) {
+            firstEdge[v + 1] += firstEdge[v];
+        }
+
+        // 3. renumber nodes in BFS order so the children of a node are contiguous
+        int[] order = new int[nodes];
+        int[] rank = new int[nodes];
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int old = order[head++];
+            for (int k = firstEdge[old]; k < firstEdge[old + 1]; k++) {
+                int child = edges.get(keys[k]);
+                rank[child] = tail;
+                order[tail++] = child;
+            }
+        }
+
+        int[] childStart = new int[nodes + 1];
+        char[] childChar = new char[keys.length];
+        int[] childNode = new int[keys.length];
+        int edge = 0;
+        for (int v = 0; v < nodes; v++) {
+            childStart[v] = edge;
+            int old = order[v];
+            for (int k = firstEdge[old]; k < firstEdge[old + 1]; k++) {
+                childChar[edge] = (char) keys[k];
+                childNode[edge] = rank[edges.get(keys[k])];
+                edge++;
+            }
+        }
+        childStart[nodes] = edge;
+
+        int[] outStart = new int[nodes + 1];
+        for (int id = 0; id < patterns.length; id++) {
+            if (terminal[id] != -1) {
+                terminal[id] = rank[terminal[id]];
+                outStart[terminal[id] + 1]++;
+            }
+        }
+        for (int v = 0; v < nodes; v++) {
+            outStart[v + 1] += outStart[v];
+        }
+        int[] outIds = new int[outStart[nodes]];
+        int[] fill = Arrays.copyOf(outStart, nodes);
+        for (int id = 0; id < patterns.length; id++) {
+            if (terminal[id] != -1) {
+                outIds[fill[terminal[id]]++] = id;
+            }
+        }
+
+        MultiPatternMatcher matcher = new MultiPatternMatcher(patterns, childStart, childChar, childNode,
+                new int[nodes], new int[nodes], outStart, outIds);
+        matcher.linkFailures();
+        return matcher;
+    }
+
+    // 4. failure links, computed in BFS order exactly like the lps array:
+    // the fail target of a child is reached by following the parent's fail chain.
+    // nodes are already numbered in BFS order, so a plain loop visits parents first
+    private void linkFailures() {
+        dictLink[ROOT] = -1;
+        for (int node = 0; node < fail.length; node++) {
+            for (int k = childStart[node]; k < childStart[node + 1]; k++) {
+                int child = childNode[k];
+                char c = childChar[k];
+                int target = ROOT;
+                if (node != ROOT) {
+                    target = next(fail[node], c);
+                }
+                fail[child] = target;
+                dictLink[child] = outStart[target] < outStart[target + 1] ? target : dictLink[target];
+            }
+        }
+    }
+}
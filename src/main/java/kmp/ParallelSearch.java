@@ -0,0 +1,60 @@
+package kmp;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork/join version of findAll. The text is split into segments and every segment
+ * owns the matches starting inside it; it is scanned up to m - 1 characters past its
+ * end so a match crossing the boundary is still seen, but by exactly one segment.
+ * Concatenating the segment results in order therefore gives the sorted,
+ * duplicate-free sequential result.
+ */
+final class ParallelSearch extends RecursiveTask<int[]> {
+    private static final long serialVersionUID = 1L;
+
+    // texts shorter than this are searched sequentially
+    static final int THRESHOLD = 1 << 20;
+    static final int MIN_SEGMENT = 1 << 16;
+
+    private final CompiledPattern pattern;
+    private final String text;
+    private final int from;
+    private final int to;
+    private final int segmentSize;
+
+    private ParallelSearch(CompiledPattern pattern, String text, int from, int to, int segmentSize) {
+        this.pattern = pattern;
+        this.text = text;
+        this.from = from;
+        this.to = to;
+        this.segmentSize = segmentSize;
+    }
+
+    static int[] findAll(CompiledPattern pattern, String text, ForkJoinPool pool, int minSegment) {
+        // a few segments per worker keeps the pool balanced when match density varies
+        int segmentSize = Math.max(minSegment, text.length() / (pool.getParallelism() * 4));
+        return pool.invoke(new ParallelSearch(pattern, text, 0, text.length(), segmentSize));
+    }
+
+    @Override
+    protected int[] compute() {
+        if (to - from <= segmentSize) {
+            MatchBuffer matches = new MatchBuffer();
+            int end = (int) Math.min(text.length(), (long) to + pattern.length() - 1);
+            pattern.findAll(text, from, end, matches);
+            return matches.toArray();
+        }
+
+        int mid = from + (to - from) / 2;
+        ParallelSearch right = new ParallelSearch(pattern, text, mid, to, segmentSize);
+        right.fork();
+        int[] left = new ParallelSearch(pattern, text, from, mid, segmentSize).compute();
+        int[] rest = right.join();
+
+        int[] merged = new int[left.length + rest.length];
+        System.arraycopy(left, 0, merged, 0, left.length);
+        System.arraycopy(rest, 0, merged, left.length, rest.length);
+        return merged;
+    }
+}
@@ -0,0 +1,122 @@
+package kmp;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A pattern that grows one character at a time while keeping its lps array up to date.
+ *
+ * Appending c extends the table by one entry, found by following the lps chain from the
+ * previous entry exactly as computeLPSArray does; over any sequence of appends the chain
+ * walks cost O(1) amortized per char. Removing chars from the end never invalidates the
+ * remaining entries, so truncation is O(1) too, though alternating deletes and appends
+ * can defeat the amortized bound. Not thread-safe; {@link #compile()} snapshots the
+ * current pattern into an immutable {@link CompiledPattern}.
+ */
+public final class PatternBuilder implements CharSequence {
+    private char[] chars;
+    private int[] lps;
+    private int length;
+
+    public PatternBuilder() {
+        this(16);
+    }
+
+    public PatternBuilder(int initialCapacity) {
+        this.chars = new char[Math.max(1, initialCapacity)];
+        this.lps = new int[chars.length];
+    }
+
+    public PatternBuilder append(char c) {
+        if (length == chars.length) {
+            chars = Arrays.copyOf(chars, length * 2);
+            lps = Arrays.copyOf(lps, length * 2);
+        }
+        int k = 0;
+        if (length > 0) {
+            k = lps[length - 1];
+            while (k > 0 && chars[k] != c) {
+                k = lps[k - 1];
+            }
+            if (chars[k] == c) {
+                k++;
+            }
+        }
+        chars[length] = c;
+        lps[length] = k;
+        length++;
+        return this;
+    }
+
+    public PatternBuilder append(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            append(s.charAt(i));
+        }
+        return this;
+    }
+
+    public PatternBuilder deleteLast() {
+        if (length == 0) {
+            throw new IllegalStateException("Pattern is empty");
+        }
+        length--;
+        return this;
+    }
+
+    // shortens the pattern to newLength chars; growing it is only possible through append
+    public PatternBuilder setLength(int newLength) {
+        Objects.checkIndex(newLength, length + 1);
+        length = newLength;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        Objects.checkIndex(index, length);
+        return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        Objects.checkFromToIndex(start, end, length);
+        return new String(chars, start, end - start);
+    }
+
+    public int[] lps() {
+        return Arrays.copyOf(lps, length);
+    }
+
+    public CompiledPattern compile() {
+        return compile(MatchOptions.DEFAULT);
+    }
+
+    // reuses the maintained lps table unless case folding changes the chars it was built for
+    public CompiledPattern compile(MatchOptions options) {
+        FailureTable table = options.caseFolding() == CaseFolding.NONE
+                ? new FailureTable(lps, length, options.offHeap())
+                : null;
+        return new CompiledPattern(toString(), options, table);
+    }
+
+    // the KMP step for the current pattern, same contract as CompiledPattern.next:
+    // a state equal to length() means a match just ended
+    int next(int j, char c) {
+        if (j == length) {
+            j = lps[j - 1];
+        }
+        while (j > 0 && chars[j] != c) {
+            j = lps[j - 1];
+        }
+        return chars[j] == c ? j + 1 : 0;
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+}
@@ -0,0 +1,151 @@
+package kmp;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of compiled patterns keyed by pattern string.
+ *
+ * The weight of an entry is the size of its tables ({@link CompiledPattern#tableBytes()})
+ * and the total weight never exceeds maxWeightBytes. Keys are hashed onto independent
+ * stripes, each an access-ordered map behind its own lock holding an equal share of
+ * the weight budget (at least 256 bytes unless the whole budget is smaller), and the
+ * least recently used entries of a stripe are evicted first.
+ * Patterns are compiled outside the lock, so a miss never blocks lookups of other keys.
+ * Patterns heavier than a whole stripe are compiled but not cached.
+ */
+public final class PatternCache {
+    private static final int DEFAULT_STRIPES = 16;
+    private static final long MIN_STRIPE_BYTES = 256;
+
+    private final Stripe[] stripes;
+    private final Engine engine;
+    private final long maxWeightBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public PatternCache(long maxWeightBytes) {
+        this(maxWeightBytes, Engine.LPS, DEFAULT_STRIPES);
+    }
+
+    public PatternCache(long maxWeightBytes, Engine engine, int stripeCount) {
+        if (maxWeightBytes <= 0) {
+            throw new IllegalArgumentException("maxWeightBytes must be positive: " + maxWeightBytes);
+        }
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("stripeCount must be positive: " + stripeCount);
+        }
+        this.engine = engine;
+        this.maxWeightBytes = maxWeightBytes;
+        // small budgets get fewer stripes, so that no stripe's share is too small to hold a pattern;
+        // the remainder is spread so the shares add up to the budget
+        int count = (int) Math.max(1, Math.min(stripeCount, maxWeightBytes / MIN_STRIPE_BYTES));
+        this.stripes = new Stripe[count];
+        for (int k = 0; k < count; k++) {
+            stripes[k] = new Stripe(maxWeightBytes / count + (k < maxWeightBytes % count ? 1 : 0));
+        }
+    }
+
+    private static final class Stripe {
+        final LinkedHashMap<String, CompiledPattern> entries = new LinkedHashMap<>(16, 0.75f, true);
+        final long capacity;
+        long weight;
+
+        Stripe(long capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    // returns the cached pattern or compiles and caches it. a null pattern is treated as empty
+    public CompiledPattern get(String pattern) {
+        String key = pattern == null ? "" : pattern;
+        Stripe stripe = stripeFor(key);
+
+        synchronized (stripe) {
+            CompiledPattern cached = stripe.entries.get(key);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+
+        misses.increment();
+        CompiledPattern compiled = KMPAlgorithm.compile(key, engine);
+        long weight = compiled.tableBytes();
+        if (weight > stripe.capacity) {
+            return compiled;
+        }
+
+        synchronized (stripe) {
+            // another thread may have compiled the same pattern meanwhile
+            CompiledPattern existing = stripe.entries.putIfAbsent(key, compiled);
+            if (existing != null) {
+                return existing;
+            }
+            stripe.weight += weight;
+            Iterator<Map.Entry<String, CompiledPattern>> eldest = stripe.entries.entrySet().iterator();
+            while (stripe.weight > stripe.capacity) {
+                CompiledPattern evicted = eldest.next().getValue();
+                eldest.remove();
+                stripe.weight -= evicted.tableBytes();
+                evictions.increment();
+            }
+        }
+
+        return compiled;
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.entries.clear();
+                stripe.weight = 0;
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    public long weightBytes() {
+        long weight = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                weight += stripe.weight;
+            }
+        }
+        return weight;
+    }
+
+    public long maxWeightBytes() {
+        return maxWeightBytes;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private Stripe stripeFor(String key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return stripes[Math.floorMod(h, stripes.length)];
+    }
+}
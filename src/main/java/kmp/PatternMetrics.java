@@ -0,0 +1,65 @@
+package kmp;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters for one pattern text, kept by {@link SearchMetrics#pattern(String)}.
+ * Patterns compiled from the same text with different options share one entry.
+ */
+public final class PatternMetrics {
+    private final String pattern;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder charsScanned = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder failureLinks = new LongAdder();
+    private final LongAdder horspoolFallbacks = new LongAdder();
+
+    PatternMetrics(String pattern) {
+        this.pattern = pattern;
+    }
+
+    void record(long scanned, long found) {
+        calls.increment();
+        charsScanned.add(scanned);
+        matches.add(found);
+    }
+
+    void recordFailureLinks(long links) {
+        failureLinks.add(links);
+    }
+
+    void recordHorspoolFallback() {
+        horspoolFallbacks.increment();
+    }
+
+    public String pattern() {
+        return pattern;
+    }
+
+    public long calls() {
+        return calls.sum();
+    }
+
+    public long charsScanned() {
+        return charsScanned.sum();
+    }
+
+    public long matches() {
+        return matches.sum();
+    }
+
+    public long failureLinks() {
+        return failureLinks.sum();
+    }
+
+    public long horspoolFallbacks() {
+        return horspoolFallbacks.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "PatternMetrics{pattern=" + pattern + ", calls=" + calls() + ", charsScanned=" + charsScanned()
+                + ", matches=" + matches() + ", failureLinks=" + failureLinks()
+                + ", horspoolFallbacks=" + horspoolFallbacks() + "}";
+    }
+}
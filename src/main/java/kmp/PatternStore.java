@@ -0,0 +1,435 @@
+package kmp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Binary file of compiled patterns and multi-pattern matchers, read back through a memory-mapped view.
+ *
+ * A pattern entry keeps the pattern, its options, the resolved engine, the lps table in its
+ * compact width and the automaton table when there is one. A matcher entry keeps the patterns
+ * of a {@link MultiPatternMatcher} and its trie, fail and output arrays. {@link #open(Path)}
+ * maps the file and checks every entry header, but builds nothing: a pattern is created on its
+ * first {@link #get(int)}, and its lps and automaton tables are read in place from the mapping
+ * rather than copied or recomputed, so opening a large store is cheap and only pages that
+ * are used are ever loaded. A matcher is created on its first {@link #getMatcher(int)} by bulk
+ * copying its arrays out of the mapping; its trie and failure links are not rebuilt.
+ *
+ * Layout, little-endian, version 2:
+ * <pre>
+ * header   int magic "KMPS", int version, int count, int 0, then count longs: entry offsets
+ * pattern  byte requested engine, byte resolved engine, byte case folding,
+ *          byte flags (1 code points, 2 prefilter, 4 off-heap), long automaton limit,
+ *          int pattern length m, int lps width, int automaton length, int 0,
+ *          m UTF-16 chars, lps entries, automaton ints; each table starts on a 4-byte boundary
+ * matcher  byte 0, byte 0, byte 0, byte flags (8 matcher), long total pattern chars c,
+ *          int pattern count p, int node count n, int edge count e, int output count o,
+ *          p ints pattern lengths, c UTF-16 chars, then on a 4-byte boundary the ints
+ *          childStart[n + 1], childNode[e], fail[n], dictLink[n], outStart[n + 1], outIds[o]
+ *          and the chars childChar[e]
+ * </pre>
+ * Version 1 files, which hold pattern entries only, are still read.
+ * Engine and folding values are enum ordinals; a change to either enum needs a new version.
+ * Stores are limited to 2 GB, the size of a single mapping.
+ */
+public final class PatternStore {
+    public static final int MAGIC = 0x53504D4B; // "KMPS" read as little-endian bytes
+    public static final int VERSION = 2;
+
+    private static final int HEADER_BYTES = 16;
+    private static final int ENTRY_HEADER_BYTES = 28;
+    private static final int CODE_POINTS = 1;
+    private static final int PREFILTER = 2;
+    private static final int OFF_HEAP = 4;
+    private static final int MATCHER = 8;
+
+    private final ByteBuffer mapped;
+    private final long[] offsets;
+    private final long[] matcherOffsets;
+    private final AtomicReferenceArray<CompiledPattern> patterns;
+    private final AtomicReferenceArray<MultiPatternMatcher> matchers;
+
+    private PatternStore(ByteBuffer mapped, long[] offsets, long[] matcherOffsets) {
+        this.mapped = mapped;
+        this.offsets = offsets;
+        this.matcherOffsets = matcherOffsets;
+        this.patterns = new AtomicReferenceArray<>(offsets.length);
+        this.matchers = new AtomicReferenceArray<>(matcherOffsets.length);
+    }
+
+    public static void write(Path file, List<CompiledPattern> patterns) throws IOException {
+        write(file, patterns, List.of());
+    }
+
+    // patterns and matchers are numbered separately, each in list order
+    public static void write(Path file, List<CompiledPattern> patterns, List<MultiPatternMatcher> matchers)
+            throws IOException {
+        int count = patterns.size() + matchers.size();
+        long size = HEADER_BYTES + (long) count * Long.BYTES;
+        long[] offsets = new long[count];
+        for (int p = 0; p < count; p++) {
+            offsets[p] = size;
+            long bytes = p < patterns.size() ? entryBytes(patterns.get(p))
+                    : matcherBytes(matchers.get(p - patterns.size()));
+            size = align(size + bytes, Long.BYTES);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Pattern store would exceed 2 GB: " + size + " bytes");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(MAGIC).putInt(VERSION).putInt(offsets.length).putInt(0);
+            for (long offset : offsets) {
+                out.putLong(offset);
+            }
+            for (int p = 0; p < offsets.length; p++) {
+                out.position((int) offsets[p]);
+                if (p < patterns.size()) {
+                    writeEntry(out, patterns.get(p));
+                } else {
+                    writeMatcher(out, matchers.get(p - patterns.size()));
+                }
+            }
+            out.force();
+        }
+    }
+
+    public static PatternStore open(Path file) throws IOException {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Pattern store larger than 2 GB: " + file);
+            }
+            // the mapping stays valid after the channel is closed
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        if (mapped.limit() < HEADER_BYTES || mapped.getInt(0) != MAGIC) {
+            throw new IOException("Not a pattern store: " + file);
+        }
+        int version = mapped.getInt(4);
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported pattern store version " + version + ": " + file);
+        }
+        int count = mapped.getInt(8);
+        if (count < 0 || HEADER_BYTES + (long) count * Long.BYTES > mapped.limit()) {
+            throw new IOException("Corrupt pattern store header: " + file);
+        }
+        long[] offsets = new long[count];
+        long[] matcherOffsets = new long[count];
+        int patternCount = 0;
+        int matcherCount = 0;
+        for (int p = 0; p < count; p++) {
+            long offset = mapped.getLong(HEADER_BYTES + p * Long.BYTES);
+            if (checkEntry(mapped, offset, p, version, file)) {
+                matcherOffsets[matcherCount++] = offset;
+            } else {
+                offsets[patternCount++] = offset;
+            }
+        }
+        return new PatternStore(mapped, Arrays.copyOf(offsets, patternCount),
+                Arrays.copyOf(matcherOffsets, matcherCount));
+    }
+
+    // number of compiled patterns
+    public int size() {
+        return offsets.length;
+    }
+
+    public int matcherCount() {
+        return matcherOffsets.length;
+    }
+
+    // creates the pattern on first access; later calls return the same instance
+    public CompiledPattern get(int index) {
+        CompiledPattern pattern = patterns.get(index);
+        if (pattern == null) {
+            pattern = readEntry(mapped, (int) offsets[index], index);
+            if (!patterns.compareAndSet(index, null, pattern)) {
+                pattern = patterns.get(index);
+            }
+        }
+        return pattern;
+    }
+
+    // creates the matcher on first access; later calls return the same instance
+    public MultiPatternMatcher getMatcher(int index) {
+        MultiPatternMatcher matcher = matchers.get(index);
+        if (matcher == null) {
+            matcher = readMatcher(mapped, (int) matcherOffsets[index], index);
+            if (!matchers.compareAndSet(index, null, matcher)) {
+                matcher = matchers.get(index);
+            }
+        }
+        return matcher;
+    }
+
+    private static long entryBytes(CompiledPattern pattern) {
+        int m = pattern.pattern().length();
+        long size = align(ENTRY_HEADER_BYTES + (long) m * Character.BYTES, Integer.BYTES);
+        size = align(size + pattern.failureTable().sizeBytes(), Integer.BYTES);
+        return size + (long) pattern.automatonLength() * Integer.BYTES;
+    }
+
+    private static void writeEntry(ByteBuffer out, CompiledPattern pattern) {
+        int base = out.position();
+        MatchOptions options = pattern.options();
+        FailureTable lps = pattern.failureTable();
+        String text = pattern.pattern();
+        int flags = (options.codePoints() ? CODE_POINTS : 0) | (options.prefilter() ? PREFILTER : 0)
+                | (options.offHeap() ? OFF_HEAP : 0);
+
+        out.put((byte) options.engine().ordinal());
+        out.put((byte) pattern.engine().ordinal());
+        out.put((byte) options.caseFolding().ordinal());
+        out.put((byte) flags);
+        out.putLong(options.automatonLimit());
+        out.putInt(text.length());
+        out.putInt(lps.width());
+        out.putInt(pattern.automatonLength());
+        out.putInt(0);
+        for (int i = 0; i < text.length(); i++) {
+            out.putChar(text.charAt(i));
+        }
+        out.position(base + (int) align(out.position() - base, Integer.BYTES));
+        lps.writeTo(out);
+        out.position(base + (int) align(out.position() - base, Integer.BYTES));
+        for (int k = 0, n = pattern.automatonLength(); k < n; k++) {
+            out.putInt(pattern.automatonEntry(k));
+        }
+    }
+
+    private static long matcherBytes(MultiPatternMatcher matcher) {
+        return matcherBytes(matcher.patternCount(), totalChars(matcher), matcher.nodeCount(),
+                matcher.childChar().length, matcher.outIds().length);
+    }
+
+    private static long matcherBytes(int patterns, long chars, int nodes, int edges, int outputs) {
+        long size = ENTRY_HEADER_BYTES + (long) patterns * Integer.BYTES + chars * Character.BYTES;
+        size = align(size, Integer.BYTES) + (4L * nodes + 2 + edges + outputs) * Integer.BYTES;
+        return size + (long) edges * Character.BYTES;
+    }
+
+    private static long totalChars(MultiPatternMatcher matcher) {
+        long chars = 0;
+        for (int p = 0; p < matcher.patternCount(); p++) {
+            chars += matcher.pattern(p).length();
+        }
+        return chars;
+    }
+
+    private static void writeMatcher(ByteBuffer out, MultiPatternMatcher matcher) {
+        int base = out.position();
+        int patterns = matcher.patternCount();
+        out.put((byte) 0).put((byte) 0).put((byte) 0).put((byte) MATCHER);
+        out.putLong(totalChars(matcher));
+        out.putInt(patterns);
+        out.putInt(matcher.nodeCount());
+        out.putInt(matcher.childChar().length);
+        out.putInt(matcher.outIds().length);
+        for (int p = 0; p < patterns; p++) {
+            out.putInt(matcher.pattern(p).length());
+        }
+        for (int p = 0; p < patterns; p++) {
+            String pattern = matcher.pattern(p);
+            for (int i = 0; i < pattern.length(); i++) {
+                out.putChar(pattern.charAt(i));
+            }
+        }
+        out.position(base + (int) align(out.position() - base, Integer.BYTES));
+        for (int[] table : new int[][]{matcher.childStart(), matcher.childNode(), matcher.fail(),
+                matcher.dictLink(), matcher.outStart(), matcher.outIds()}) {
+            out.asIntBuffer().put(table);
+            out.position(out.position() + table.length * Integer.BYTES);
+        }
+        out.asCharBuffer().put(matcher.childChar());
+        out.position(out.position() + matcher.childChar().length * Character.BYTES);
+    }
+
+    // validates the headers and sizes that readEntry and readMatcher rely on, so a bad layout
+    // fails at open; the table values are checked on first use. returns whether the entry is a matcher
+    private static boolean checkEntry(ByteBuffer mapped, long offset, int index, int version, Path file)
+            throws IOException {
+        long limit = mapped.limit();
+        if (offset < HEADER_BYTES || offset % Integer.BYTES != 0 || offset + ENTRY_HEADER_BYTES > limit) {
+            throw new IOException("Corrupt entry " + index + " in " + file);
+        }
+        int base = (int) offset;
+        if (version > 1 && mapped.get(base + 3) == MATCHER) {
+            checkMatcher(mapped, base, index, file);
+            return true;
+        }
+        int requested = mapped.get(base);
+        int resolved = mapped.get(base + 1);
+        int folding = mapped.get(base + 2);
+        int m = mapped.getInt(base + 12);
+        int width = mapped.getInt(base + 16);
+        int automatonLength = mapped.getInt(base + 20);
+        Engine[] engines = Engine.values();
+        boolean valid = requested >= 0 && requested < engines.length
+                && resolved >= 0 && resolved < engines.length && engines[resolved] != Engine.AUTO
+                && folding >= 0 && folding < CaseFolding.values().length
+                && m >= 0 && (width == Byte.BYTES || width == Short.BYTES || width == Integer.BYTES)
+                && automatonLength >= 0
+                && (engines[resolved] == Engine.AUTOMATON) == (automatonLength != 0)
+                && (automatonLength == 0 || automatonLength == (m + 1L) * CompiledPattern.ALPHABET);
+        if (!valid) {
+            throw new IOException("Corrupt entry " + index + " in " + file);
+        }
+        long size = align(ENTRY_HEADER_BYTES + (long) m * Character.BYTES, Integer.BYTES);
+        size = align(size + (long) m * width, Integer.BYTES) + (long) automatonLength * Integer.BYTES;
+        if (offset + size > limit) {
+            throw new IOException("Truncated entry " + index + " in " + file);
+        }
+        return false;
+    }
+
+    private static void checkMatcher(ByteBuffer mapped, int base, int index, Path file) throws IOException {
+        long chars = mapped.getLong(base + 4);
+        int patterns = mapped.getInt(base + 12);
+        int nodes = mapped.getInt(base + 16);
+        int edges = mapped.getInt(base + 20);
+        int outputs = mapped.getInt(base + 24);
+        // a trie has one edge per node besides the root, and each pattern ends at most once
+        boolean valid = mapped.get(base) == 0 && mapped.get(base + 1) == 0 && mapped.get(base + 2) == 0
+                && chars >= 0 && patterns >= 0 && nodes >= 1 && edges == nodes - 1
+                && outputs >= 0 && outputs <= patterns;
+        if (!valid) {
+            throw new IOException("Corrupt entry " + index + " in " + file);
+        }
+        if (base + matcherBytes(patterns, chars, nodes, edges, outputs) > mapped.limit()) {
+            throw new IOException("Truncated entry " + index + " in " + file);
+        }
+        long sum = 0;
+        for (int p = 0; p < patterns; p++) {
+            int length = mapped.getInt(base + ENTRY_HEADER_BYTES + p * Integer.BYTES);
+            if (length < 0) {
+                throw new IOException("Corrupt entry " + index + " in " + file);
+            }
+            sum += length;
+        }
+        if (sum != chars) {
+            throw new IOException("Corrupt entry " + index + " in " + file);
+        }
+    }
+
+    // maps the tables in place, then checks every lps value and automaton target they hold,
+    // so a corrupt file cannot make a search index out of bounds later
+    private static CompiledPattern readEntry(ByteBuffer mapped, int base, int index) {
+        Engine[] engines = Engine.values();
+        Engine requested = engines[mapped.get(base)];
+        Engine resolved = engines[mapped.get(base + 1)];
+        CaseFolding folding = CaseFolding.values()[mapped.get(base + 2)];
+        int flags = mapped.get(base + 3);
+        long automatonLimit = mapped.getLong(base + 4);
+        int m = mapped.getInt(base + 12);
+        int width = mapped.getInt(base + 16);
+        int automatonLength = mapped.getInt(base + 20);
+
+        MatchOptions options = MatchOptions.DEFAULT
+                .withEngine(requested)
+                .withAutomatonLimit(automatonLimit)
+                .withCaseFolding(folding)
+                .withCodePoints((flags & CODE_POINTS) != 0)
+                .withPrefilter((flags & PREFILTER) != 0)
+                .withOffHeap((flags & OFF_HEAP) != 0);
+
+        char[] chars = new char[m];
+        int position = base + ENTRY_HEADER_BYTES;
+        for (int i = 0; i < m; i++) {
+            chars[i] = mapped.getChar(position + i * Character.BYTES);
+        }
+        position = base + (int) align(ENTRY_HEADER_BYTES + (long) m * Character.BYTES, Integer.BYTES);
+        FailureTable lps = m == 0 ? FailureTable.EMPTY : new FailureTable(region(mapped, position, m * width), width, m);
+        position = base + (int) align(position - base + (long) m * width, Integer.BYTES);
+        IntBuffer automaton = automatonLength == 0 ? null
+                : region(mapped, position, automatonLength * Integer.BYTES).asIntBuffer();
+
+        // lps[i] is the length of a proper border of the first i + 1 chars
+        boolean valid = true;
+        for (int i = 0; i < m && valid; i++) {
+            int value = lps.get(i);
+            valid = value >= 0 && value <= i;
+        }
+        for (int k = 0; k < automatonLength && valid; k++) {
+            int target = automaton.get(k);
+            valid = target >= 0 && target <= m;
+        }
+        if (!valid) {
+            throw new IllegalStateException("Corrupt pattern entry " + index);
+        }
+        return new CompiledPattern(new String(chars), options, resolved, lps, automaton);
+    }
+
+    // copies the arrays out of the mapping, then checks every node, edge and pattern id they
+    // hold, so a corrupt file cannot make a search index out of bounds later
+    private static MultiPatternMatcher readMatcher(ByteBuffer mapped, int base, int index) {
+        int patternCount = mapped.getInt(base + 12);
+        int nodes = mapped.getInt(base + 16);
+        int edges = mapped.getInt(base + 20);
+        int outputs = mapped.getInt(base + 24);
+
+        String[] patterns = new String[patternCount];
+        int position = base + ENTRY_HEADER_BYTES + patternCount * Integer.BYTES;
+        for (int p = 0; p < patternCount; p++) {
+            char[] chars = new char[mapped.getInt(base + ENTRY_HEADER_BYTES + p * Integer.BYTES)];
+            region(mapped, position, chars.length * Character.BYTES).asCharBuffer().get(chars);
+            patterns[p] = new String(chars);
+            position += chars.length * Character.BYTES;
+        }
+        position = base + (int) align(position - base, Integer.BYTES);
+        int[] childStart = new int[nodes + 1];
+        int[] childNode = new int[edges];
+        int[] fail = new int[nodes];
+        int[] dictLink = new int[nodes];
+        int[] outStart = new int[nodes + 1];
+        int[] outIds = new int[outputs];
+        for (int[] table : new int[][]{childStart, childNode, fail, dictLink, outStart, outIds}) {
+            region(mapped, position, table.length * Integer.BYTES).asIntBuffer().get(table);
+            position += table.length * Integer.BYTES;
+        }
+        char[] childChar = new char[edges];
+        region(mapped, position, edges * Character.BYTES).asCharBuffer().get(childChar);
+
+        boolean valid = childStart[0] == 0 && childStart[nodes] == edges
+                && outStart[0] == 0 && outStart[nodes] == outputs;
+        for (int v = 0; v < nodes && valid; v++) {
+            valid = childStart[v] <= childStart[v + 1] && outStart[v] <= outStart[v + 1]
+                    && fail[v] >= 0 && fail[v] < nodes && dictLink[v] >= -1 && dictLink[v] < nodes;
+        }
+        for (int k = 0; k < edges && valid; k++) {
+            valid = childNode[k] > 0 && childNode[k] < nodes;
+        }
+        for (int k = 0; k < outputs && valid; k++) {
+            valid = outIds[k] >= 0 && outIds[k] < patternCount;
+        }
+        if (!valid) {
+            throw new IllegalStateException("Corrupt matcher entry " + index);
+        }
+        return new MultiPatternMatcher(patterns, childStart, childChar, childNode, fail, dictLink, outStart, outIds);
+    }
+
+    // a view of [position, position + length) sharing the mapping, in little-endian order
+    private static ByteBuffer region(ByteBuffer mapped, int position, int length) {
+        ByteBuffer view = mapped.duplicate();
+        view.position(position).limit(position + length);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long align(long value, int alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+}
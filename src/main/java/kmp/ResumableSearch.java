@@ -0,0 +1,114 @@
+package kmp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search over one text that can stop early and pick up later from a {@link SearchCursor}.
+ *
+ * A call scans until the end of the text, a deadline, {@link #cancel()} or an interrupt of
+ * the calling thread, whichever comes first, and returns the cursor it stopped at. The
+ * deadline, cancel flag and interrupt status are checked every {@link #CHECK_INTERVAL} chars,
+ * so a call overruns its deadline by at most that much scanning, and always scans at least
+ * that much unless cancelled. An interrupt is left set for the caller to handle. Splitting
+ * a scan into slices this way reports exactly the matches of a single
+ * {@link CompiledPattern#findAll(CharSequence, MatchSink)} call.
+ *
+ * In code-point mode a cursor may stop between the two chars of a surrogate pair; the pair
+ * is still matched as one code point when the search resumes. {@link #cancel()} may be
+ * called from any thread; the search itself is meant to be driven by one thread at a time.
+ */
+public final class ResumableSearch {
+    static final int CHECK_INTERVAL = 4096;
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final CompiledPattern pattern;
+    private final CharSequence text;
+    private final int m;
+    private volatile boolean cancelled;
+
+    ResumableSearch(CompiledPattern pattern, CharSequence text) {
+        this.pattern = pattern;
+        this.text = text == null ? "" : text;
+        this.m = pattern.length();
+    }
+
+    public CompiledPattern pattern() {
+        return pattern;
+    }
+
+    public CharSequence text() {
+        return text;
+    }
+
+    // stops any running or later call at its next check; a stopped search stays stopped
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // scans until the end of the text, cancel or interrupt
+    public SearchCursor findAll(SearchCursor from, MatchSink sink) {
+        return scan(from, sink, NO_DEADLINE, false);
+    }
+
+    // scans for at most about timeout; every match found in that time is reported to the sink
+    public SearchCursor findAll(SearchCursor from, MatchSink sink, long timeout, TimeUnit unit) {
+        return scan(from, sink, deadline(timeout, unit), false);
+    }
+
+    // stops right after the next match; when one was found, state() equals the pattern length
+    // and the match starts at position() - pattern length. the empty pattern never matches here,
+    // as with findAll
+    public SearchCursor findNext(SearchCursor from, long timeout, TimeUnit unit) {
+        return scan(from, null, deadline(timeout, unit), true);
+    }
+
+    // start offset of the match the cursor stopped on, or -1 if it did not stop on one
+    public int matchStart(SearchCursor cursor) {
+        int start = cursor.position() - m;
+        return m > 0 && cursor.state() == m && pattern.accepts(text, start) ? start : -1;
+    }
+
+    private SearchCursor scan(SearchCursor from, MatchSink sink, long deadline, boolean firstOnly) {
+        int n = text.length();
+        int i = from.position();
+        int j = from.state();
+        if (i > n || j > m || j > i) {
+            throw new IllegalArgumentException(from + " does not fit pattern length " + m + " and text length " + n);
+        }
+        if (m == 0) {
+            return new SearchCursor(n, 0, true);
+        }
+
+        int start = i;
+        while (i < n) {
+            // the deadline is only checked after the first block, so every call makes progress
+            if (cancelled || Thread.currentThread().isInterrupted()
+                    || i != start && deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0) {
+                return new SearchCursor(i, j, false);
+            }
+            int end = n - i > CHECK_INTERVAL ? i + CHECK_INTERVAL : n;
+            for (; i < end; i++) {
+                j = pattern.next(j, pattern.unitAt(text, i));
+                if (j == m && pattern.accepts(text, i - m + 1)) {
+                    if (firstOnly) {
+                        return new SearchCursor(i + 1, j, i + 1 == n);
+                    }
+                    sink.onMatch(i - m + 1);
+                }
+            }
+        }
+
+        return new SearchCursor(n, j, true);
+    }
+
+    private static long deadline(long timeout, TimeUnit unit) {
+        long nanos = unit.toNanos(timeout);
+        // timeouts of centuries would overflow nanoTime arithmetic and are treated as none
+        return nanos >= Long.MAX_VALUE >> 1 ? NO_DEADLINE : System.nanoTime() + Math.max(0, nanos);
+    }
+}
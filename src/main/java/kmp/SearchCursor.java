@@ -0,0 +1,69 @@
+package kmp;
+
+/**
+ * Point at which a {@link ResumableSearch} stopped: the next text position to read and
+ * the matcher state j at that position. Passing the cursor back continues the scan exactly
+ * where it left off, so no text is read twice and matches that straddle the stop are found.
+ *
+ * A cursor only depends on the pattern and the text, so it can be kept, sent elsewhere or
+ * rebuilt with {@link #of(int, int)} and resumed by any search over the same pattern and text.
+ * Immutable.
+ */
+public final class SearchCursor {
+    public static final SearchCursor START = new SearchCursor(0, 0, false);
+
+    private final int position;
+    private final int state;
+    private final boolean complete;
+
+    SearchCursor(int position, int state, boolean complete) {
+        this.position = position;
+        this.state = state;
+        this.complete = complete;
+    }
+
+    // rebuilds a cursor from a saved position and state; the search checks both against its pattern and text
+    public static SearchCursor of(int position, int state) {
+        if (position < 0 || state < 0) {
+            throw new IllegalArgumentException("Invalid cursor: position " + position + ", state " + state);
+        }
+        return new SearchCursor(position, state, false);
+    }
+
+    // next text index to be read
+    public int position() {
+        return position;
+    }
+
+    // length of the pattern prefix matched by the text before position
+    public int state() {
+        return state;
+    }
+
+    // true once the whole text has been scanned
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SearchCursor)) {
+            return false;
+        }
+        SearchCursor other = (SearchCursor) o;
+        return position == other.position && state == other.state && complete == other.complete;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * position + state) + (complete ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchCursor[position=" + position + ", state=" + state + (complete ? ", complete" : "") + "]";
+    }
+}
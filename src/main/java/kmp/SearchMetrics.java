@@ -0,0 +1,207 @@
+package kmp;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Counters and a latency histogram for String searches on compiled patterns.
+ *
+ * Metrics are collected only while installed with {@link KMPAlgorithm#setMetrics(SearchMetrics)}.
+ * When none is installed a search pays one volatile read and nothing per character.
+ * Recorded calls are {@link CompiledPattern#indexOf(String, int)},
+ * {@link CompiledPattern#findAll(String, MatchSink)} and {@link CompiledPattern#count(String)},
+ * which covers the String helpers on KMPAlgorithm. charsScanned is the length of text covered,
+ * not the number of comparisons. failureLinks counts lps failure links followed on mismatch,
+ * the extra work adversarial input causes; the automaton and indexOf engines follow none at
+ * scan time. horspoolFallbacks counts Horspool scans handed over to KMP.
+ * The same counters are kept per pattern text for up to {@link #MAX_PATTERNS} patterns.
+ * Read the values with {@link #snapshot()}, {@link #pattern(String)} or over JMX after {@link #register()}.
+ */
+public final class SearchMetrics implements SearchMetricsMXBean {
+    public static final String OBJECT_NAME = "kmp:type=SearchMetrics";
+
+    // patterns beyond this many distinct texts are only counted in the totals
+    public static final int MAX_PATTERNS = 1024;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder charsScanned = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder failureLinks = new LongAdder();
+    private final LongAdder horspoolFallbacks = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final ConcurrentHashMap<String, PatternMetrics> patterns = new ConcurrentHashMap<>();
+
+    void record(CompiledPattern pattern, long nanos, long scanned, long found) {
+        calls.increment();
+        charsScanned.add(scanned);
+        matches.add(found);
+        latency.record(nanos);
+        PatternMetrics counters = counters(pattern);
+        if (counters != null) {
+            counters.record(scanned, found);
+        }
+    }
+
+    void recordFailureLinks(CompiledPattern pattern, long links) {
+        failureLinks.add(links);
+        PatternMetrics counters = counters(pattern);
+        if (counters != null) {
+            counters.recordFailureLinks(links);
+        }
+    }
+
+    void recordHorspoolFallback(CompiledPattern pattern) {
+        horspoolFallbacks.increment();
+        PatternMetrics counters = counters(pattern);
+        if (counters != null) {
+            counters.recordHorspoolFallback();
+        }
+    }
+
+    // the size check races with other threads, so the registry may overshoot MAX_PATTERNS slightly
+    private PatternMetrics counters(CompiledPattern pattern) {
+        PatternMetrics counters = patterns.get(pattern.pattern());
+        if (counters != null || patterns.size() >= MAX_PATTERNS) {
+            return counters;
+        }
+        return patterns.computeIfAbsent(pattern.pattern(), PatternMetrics::new);
+    }
+
+    public MetricsSnapshot snapshot() {
+        return new MetricsSnapshot(calls.sum(), charsScanned.sum(), matches.sum(), failureLinks.sum(),
+                horspoolFallbacks.sum(), latency.percentiles(50, 90, 99, 99.9), latency.max());
+    }
+
+    // counters for one pattern text, or null when it has not been searched since the last reset
+    public PatternMetrics pattern(String pattern) {
+        return patterns.get(pattern);
+    }
+
+    // counters of every tracked pattern, by pattern text
+    public Map<String, PatternMetrics> patterns() {
+        return Collections.unmodifiableMap(new TreeMap<>(patterns));
+    }
+
+    public LatencyHistogram latency() {
+        return latency;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getCharsScanned() {
+        return charsScanned.sum();
+    }
+
+    @Override
+    public long getMatches() {
+        return matches.sum();
+    }
+
+    @Override
+    public long getFailureLinks() {
+        return failureLinks.sum();
+    }
+
+    @Override
+    public long getHorspoolFallbacks() {
+        return horspoolFallbacks.sum();
+    }
+
+    @Override
+    public Map<String, Long> getCallsByPattern() {
+        return byPattern(PatternMetrics::calls);
+    }
+
+    @Override
+    public Map<String, Long> getFailureLinksByPattern() {
+        return byPattern(PatternMetrics::failureLinks);
+    }
+
+    private Map<String, Long> byPattern(ToLongFunction<PatternMetrics> counter) {
+        Map<String, Long> values = new TreeMap<>();
+        patterns.forEach((pattern, counters) -> values.put(pattern, counter.applyAsLong(counters)));
+        return values;
+    }
+
+    @Override
+    public long getLatencyP50Nanos() {
+        return latency.percentile(50);
+    }
+
+    @Override
+    public long getLatencyP99Nanos() {
+        return latency.percentile(99);
+    }
+
+    @Override
+    public long getLatencyP999Nanos() {
+        return latency.percentile(99.9);
+    }
+
+    @Override
+    public long getLatencyMaxNanos() {
+        return latency.max();
+    }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        charsScanned.reset();
+        matches.reset();
+        failureLinks.reset();
+        horspoolFallbacks.reset();
+        latency.reset();
+        patterns.clear();
+    }
+
+    // registers this instance with the platform MBean server under OBJECT_NAME,
+    // replacing whatever was registered there before
+    public void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = objectName();
+        try {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (InstanceAlreadyExistsException | InstanceNotFoundException e) {
+            throw new IllegalStateException("Concurrent registration of " + OBJECT_NAME, e);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+        }
+    }
+
+    public void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName());
+        } catch (InstanceNotFoundException e) {
+            // not registered, nothing to do
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister " + OBJECT_NAME, e);
+        }
+    }
+
+    private static ObjectName objectName() {
+        try {
+            return new ObjectName(OBJECT_NAME);
+        } catch (MalformedObjectNameException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
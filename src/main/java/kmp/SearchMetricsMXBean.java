@@ -0,0 +1,32 @@
+package kmp;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link SearchMetrics}, registered by {@link SearchMetrics#register()}.
+ */
+public interface SearchMetricsMXBean {
+    long getCalls();
+
+    long getCharsScanned();
+
+    long getMatches();
+
+    long getFailureLinks();
+
+    long getHorspoolFallbacks();
+
+    Map<String, Long> getCallsByPattern();
+
+    Map<String, Long> getFailureLinksByPattern();
+
+    long getLatencyP50Nanos();
+
+    long getLatencyP99Nanos();
+
+    long getLatencyP999Nanos();
+
+    long getLatencyMaxNanos();
+
+    void reset();
+}
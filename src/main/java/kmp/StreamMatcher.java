@@ -0,0 +1,305 @@
+package kmp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.function.LongConsumer;
+
+/**
+ * Incremental KMP matcher that is fed the input chunk by chunk.
+ * Only the matcher state j and the absolute position are carried between chunks,
+ * so memory stays bounded no matter how large the input is, and matches that
+ * straddle a chunk boundary are still reported.
+ *
+ * Byte input is matched in byte mode: every byte is read as the char (b & 0xFF),
+ * i.e. an ISO-8859-1 view of the data. Use {@link KMPAlgorithm#compileBytes(byte[])}
+ * to search for an arbitrary byte sequence such as a UTF-8 encoded pattern.
+ *
+ * Offsets passed to the sink are absolute start offsets of each match in the stream.
+ * In code-point mode a char is only matched once the char after it is known, so a surrogate
+ * pair split between chunks still counts as one code point. A match ending at the last char
+ * fed is then reported by the next feed or by {@link #finish(LongConsumer)}, which should be
+ * called once at the end of char input.
+ * Not thread-safe; use one matcher per stream.
+ */
+public final class StreamMatcher {
+    static final int BUFFER_SIZE = 8192;
+
+    private final CompiledPattern pattern;
+    private final int m;
+    private int j;
+    private long position;
+
+    // code-point mode: the last char fed, not matched yet, and the char before it
+    private final boolean codePoints;
+    private boolean hasPending;
+    private char pending;
+    private char previous;
+    // for a pattern starting with a lone low surrogate, whether each of the last m chars was
+    // the second half of a pair, as a match starting there would split the pair
+    private final boolean[] pairedLow;
+
+    StreamMatcher(CompiledPattern pattern) {
+        this.pattern = pattern;
+        this.m = pattern.length();
+        this.codePoints = pattern.options().codePoints();
+        this.pairedLow = codePoints && m > 0 && Character.isLowSurrogate(pattern.pattern().charAt(0)) ? new boolean[m] : null;
+    }
+
+    public CompiledPattern pattern() {
+        return pattern;
+    }
+
+    // number of characters or bytes consumed so far
+    public long position() {
+        return position;
+    }
+
+    // length of the pattern prefix matched by the most recent input,
+    // equal to the pattern length right after a match
+    public int state() {
+        return j;
+    }
+
+    public void reset() {
+        j = 0;
+        position = 0;
+        hasPending = false;
+        previous = 0;
+    }
+
+    public int feed(char[] chunk, int offset, int length, LongConsumer sink) {
+        if (m == 0) {
+            position += length;
+            return 0;
+        }
+        if (codePoints) {
+            int count = 0;
+            for (int i = offset; i < offset + length; i++) {
+                count += feedCodePoint(chunk[i], sink);
+            }
+            return count;
+        }
+
+        int j = this.j;
+        int count = 0;
+        long base = position - offset - m + 1;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            j = pattern.next(j, chunk[i]);
+            if (j == m) {
+                sink.accept(base + i);
+                count++;
+            }
+        }
+
+        this.j = j;
+        position += length;
+        return count;
+    }
+
+    // consumes the remaining chars of the buffer
+    public int feed(CharBuffer chunk, LongConsumer sink) {
+        if (chunk.hasArray()) {
+            int length = chunk.remaining();
+            int count = feed(chunk.array(), chunk.arrayOffset() + chunk.position(), length, sink);
+            chunk.position(chunk.limit());
+            return count;
+        }
+        if (m == 0) {
+            position += chunk.remaining();
+            chunk.position(chunk.limit());
+            return 0;
+        }
+
+        if (codePoints) {
+            int count = 0;
+            while (chunk.hasRemaining()) {
+                count += feedCodePoint(chunk.get(), sink);
+            }
+            return count;
+        }
+
+        int j = this.j;
+        int count = 0;
+        while (chunk.hasRemaining()) {
+            j = pattern.next(j, chunk.get());
+            position++;
+            if (j == m) {
+                sink.accept(position - m);
+                count++;
+            }
+        }
+
+        this.j = j;
+        return count;
+    }
+
+    public int feed(byte[] chunk, int offset, int length, LongConsumer sink) {
+        if (m == 0) {
+            position += length;
+            return 0;
+        }
+
+        int j = this.j;
+        int count = 0;
+        long base = position - offset - m + 1;
+        int end = offset + length;
+        int first = pattern.firstByte();
+        for (int i = offset; i < end; i++) {
+            if (j == 0 && first >= 0) {
+                i = BytePrefilter.indexOf(chunk, i, end, (byte) first);
+                if (i < 0) {
+                    break;
+                }
+            }
+            j = pattern.next(j, (char) (chunk[i] & 0xFF));
+            if (j == m) {
+                sink.accept(base + i);
+                count++;
+            }
+        }
+
+        this.j = j;
+        position += length;
+        return count;
+    }
+
+    // consumes the remaining bytes of the buffer, heap or direct
+    public int feed(ByteBuffer chunk, LongConsumer sink) {
+        if (chunk.hasArray()) {
+            int length = chunk.remaining();
+            int count = feed(chunk.array(), chunk.arrayOffset() + chunk.position(), length, sink);
+            chunk.position(chunk.limit());
+            return count;
+        }
+        if (m == 0) {
+            position += chunk.remaining();
+            chunk.position(chunk.limit());
+            return 0;
+        }
+
+        int j = this.j;
+        int count = 0;
+        int start = chunk.position();
+        int end = chunk.limit();
+        long base = position - start - m + 1;
+        for (int i = start; i < end; i++) {
+            j = pattern.next(j, (char) (chunk.get(i) & 0xFF));
+            if (j == m) {
+                sink.accept(base + i);
+                count++;
+            }
+        }
+
+        this.j = j;
+        position += end - start;
+        chunk.position(end);
+        return count;
+    }
+
+    // consumes bytes up to the end of the next match and returns its absolute offset,
+    // or consumes the whole buffer and returns -1 when no match completes in it
+    public long find(ByteBuffer chunk) {
+        if (m == 0) {
+            position += chunk.remaining();
+            chunk.position(chunk.limit());
+            return -1;
+        }
+
+        int j = this.j;
+        int start = chunk.position();
+        int end = chunk.limit();
+        for (int i = start; i < end; i++) {
+            j = pattern.next(j, (char) (chunk.get(i) & 0xFF));
+            if (j == m) {
+                this.j = j;
+                position += i + 1 - start;
+                chunk.position(i + 1);
+                return position - m;
+            }
+        }
+
+        this.j = j;
+        position += end - start;
+        chunk.position(end);
+        return -1;
+    }
+
+    // matches the char left pending by the last feed in code-point mode, as the last char of
+    // the input, and returns the number of matches this completes: 0 or 1
+    public int finish(LongConsumer sink) {
+        if (!hasPending) {
+            return 0;
+        }
+        hasPending = false;
+        return matchPending((char) 0, sink);
+    }
+
+    private int feedCodePoint(char c, LongConsumer sink) {
+        int count = 0;
+        if (hasPending) {
+            count = matchPending(c, sink);
+            previous = pending;
+        }
+        pending = c;
+        hasPending = true;
+        position++;
+        return count;
+    }
+
+    // steps the matcher over the pending char, now that the char after it is known
+    private int matchPending(char next, LongConsumer sink) {
+        long index = position - 1;
+        if (pairedLow != null) {
+            pairedLow[(int) (index % m)] = Character.isLowSurrogate(pending) && Character.isHighSurrogate(previous);
+        }
+        j = pattern.next(j, pattern.codePointUnit(previous, pending, next));
+        if (j != m) {
+            return 0;
+        }
+        long start = index - m + 1;
+        boolean splitsPair = Character.isHighSurrogate(pending) && Character.isLowSurrogate(next)
+                || pairedLow != null && pairedLow[(int) (start % m)];
+        if (splitsPair) {
+            return 0;
+        }
+        sink.accept(start);
+        return 1;
+    }
+
+    // reads until end of input and returns the number of matches found
+    public long scan(Reader reader, LongConsumer sink) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        long count = 0;
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            count += feed(buffer, 0, read, sink);
+        }
+        return count + finish(sink);
+    }
+
+    public long scan(InputStream in, LongConsumer sink) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long count = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            count += feed(buffer, 0, read, sink);
+        }
+        return count;
+    }
+
+    public long scan(ReadableByteChannel channel, LongConsumer sink) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long count = 0;
+        while (channel.read(buffer) != -1) {
+            buffer.flip();
+            count += feed(buffer, sink);
+            buffer.clear();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,463 @@
+package kmp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Suffix automaton of a static text, built once in O(n) and queried many times.
+ *
+ * The automaton has one state per set of end positions shared by some substrings, at
+ * most 2n - 1 states and 3n - 4 transitions. Walking a pattern from the root takes one
+ * transition per char, so:
+ * <pre>
+ *   indexOf   O(m)          first occurrence, from the first end position kept per state
+ *   count     O(m)          from the end position counts computed at build time
+ *   findAll   O(m + occ)    by walking the suffix-link subtree of the pattern's state
+ * </pre>
+ * Each transition lookup is a binary search over that state's outgoing chars, sorted,
+ * which adds a log of the out-degree (at most the alphabet size). The text itself is not
+ * kept: the index answers queries on its own and can be saved with {@link #write(Path)}.
+ *
+ * Memory: 16 bytes per state (transition start, first end, count, child start), 6 per
+ * transition (char and target) and 4 per suffix-link tree edge, at most
+ * 2n * 16 + 3n * 6 + 2n * 4 = 58 bytes per input char. English prose and random text over
+ * four letters come to about 43 and 48; repetitive text needs less, down to 26 for a run of
+ * one char. {@link #memoryBytes()} gives the exact figure. Building needs roughly as much
+ * again in temporary arrays.
+ * Immutable and safe to share between threads once built.
+ */
+public final class SuffixAutomatonIndex {
+    public static final int MAGIC = 0x4B53414D; // "KSAM"
+    public static final int VERSION = 1;
+
+    private final int textLength;
+    // transitions of state s are edgeChars/edgeTargets[edgeStart[s], edgeStart[s + 1]), sorted by char
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    // end of the first occurrence of the state's substrings; stored as ~end for clone states,
+    // which do not stand for a position of their own
+    private final int[] firstEnd;
+    // number of occurrences of the state's substrings
+    private final int[] counts;
+    // children of s in the suffix-link tree are children[childStart[s], childStart[s + 1])
+    private final int[] childStart;
+    private final int[] children;
+
+    private SuffixAutomatonIndex(int textLength, int[] edgeStart, char[] edgeChars, int[] edgeTargets,
+                                 int[] firstEnd, int[] counts, int[] childStart, int[] children) {
+        this.textLength = textLength;
+        this.edgeStart = edgeStart;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.firstEnd = firstEnd;
+        this.counts = counts;
+        this.childStart = childStart;
+        this.children = children;
+    }
+
+    // a null text is indexed as empty
+    public static SuffixAutomatonIndex build(CharSequence text) {
+        return new Builder(text == null ? "" : text).build();
+    }
+
+    public int textLength() {
+        return textLength;
+    }
+
+    public int stateCount() {
+        return firstEnd.length;
+    }
+
+    public int transitionCount() {
+        return edgeChars.length;
+    }
+
+    public long memoryBytes() {
+        return (long) edgeStart.length * Integer.BYTES + (long) edgeChars.length * Character.BYTES
+                + (long) edgeTargets.length * Integer.BYTES + (long) firstEnd.length * Integer.BYTES
+                + (long) counts.length * Integer.BYTES + (long) childStart.length * Integer.BYTES
+                + (long) children.length * Integer.BYTES;
+    }
+
+    // same contract as KMPAlgorithm.search: an empty or null pattern is found at 0
+    public int indexOf(CharSequence pattern) {
+        if (pattern == null || pattern.length() == 0) {
+            return 0;
+        }
+        int state = walk(pattern);
+        if (state < 0) {
+            return -1;
+        }
+        int end = firstEnd[state];
+        return (end < 0 ? ~end : end) - pattern.length() + 1;
+    }
+
+    // an empty pattern has no occurrences, like CompiledPattern.count
+    public int count(CharSequence pattern) {
+        if (pattern == null || pattern.length() == 0) {
+            return 0;
+        }
+        int state = walk(pattern);
+        return state < 0 ? 0 : counts[state];
+    }
+
+    // every start offset in ascending order
+    public int[] findAll(CharSequence pattern) {
+        MatchBuffer matches = new MatchBuffer();
+        findAll(pattern, matches);
+        int[] offsets = matches.toArray();
+        Arrays.sort(offsets);
+        return offsets;
+    }
+
+    // pushes every start offset into the sink in no particular order and returns the count
+    public int findAll(CharSequence pattern, MatchSink sink) {
+        if (pattern == null || pattern.length() == 0) {
+            return 0;
+        }
+        int state = walk(pattern);
+        if (state < 0) {
+            return 0;
+        }
+        int m = pattern.length();
+        int[] stack = new int[Math.min(firstEnd.length, counts[state] * 2 + 1)];
+        int top = 0;
+        stack[top++] = state;
+        int found = 0;
+        while (top > 0) {
+            int s = stack[--top];
+            if (firstEnd[s] >= 0) {
+                sink.onMatch(firstEnd[s] - m + 1);
+                found++;
+            }
+            for (int c = childStart[s]; c < childStart[s + 1]; c++) {
+                stack[top++] = children[c];
+            }
+        }
+        return found;
+    }
+
+    // the state reached by reading the pattern from the root, or -1
+    private int walk(CharSequence pattern) {
+        int state = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            state = transition(state, pattern.charAt(i));
+            if (state < 0) {
+                return -1;
+            }
+        }
+        return state;
+    }
+
+    private int transition(int state, char c) {
+        int lo = edgeStart[state];
+        int hi = edgeStart[state + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char found = edgeChars[mid];
+            if (found < c) {
+                lo = mid + 1;
+            } else if (found > c) {
+                hi = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return -1;
+    }
+
+    // big-endian: int magic, int version, int text length, int states, int transitions,
+    // then edgeStart, edgeChars, edgeTargets, firstEnd, counts, childStart and children
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(textLength);
+            out.writeInt(firstEnd.length);
+            out.writeInt(edgeChars.length);
+            writeInts(out, edgeStart);
+            for (char c : edgeChars) {
+                out.writeChar(c);
+            }
+            writeInts(out, edgeTargets);
+            writeInts(out, firstEnd);
+            writeInts(out, counts);
+            writeInts(out, childStart);
+            writeInts(out, children);
+        }
+    }
+
+    public static SuffixAutomatonIndex read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a suffix automaton index: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported suffix automaton index version " + version + ": " + file);
+            }
+            int textLength = in.readInt();
+            int states = in.readInt();
+            int transitions = in.readInt();
+            if (textLength < 0 || states < 1 || transitions < 0 || states > 2 * textLength + 1) {
+                throw new IOException("Corrupt suffix automaton index header: " + file);
+            }
+            int[] edgeStart = readInts(in, states + 1);
+            char[] edgeChars = new char[transitions];
+            for (int e = 0; e < transitions; e++) {
+                edgeChars[e] = in.readChar();
+            }
+            int[] edgeTargets = readInts(in, transitions);
+            int[] firstEnd = readInts(in, states);
+            int[] counts = readInts(in, states);
+            int[] childStart = readInts(in, states + 1);
+            int[] children = readInts(in, states - 1);
+            if (!isConsistent(textLength, edgeStart, edgeChars, edgeTargets, firstEnd, counts, childStart, children)) {
+                throw new IOException("Corrupt suffix automaton index: " + file);
+            }
+            return new SuffixAutomatonIndex(textLength, edgeStart, edgeChars, edgeTargets,
+                    firstEnd, counts, childStart, children);
+        }
+    }
+
+    // checks every index the queries follow, so a damaged file cannot make them go out of bounds:
+    // sorted in-range transitions, end positions inside the text, and children that form one tree
+    // from the root whose subtree sizes agree with the counts findAll sizes its stack by
+    private static boolean isConsistent(int textLength, int[] edgeStart, char[] edgeChars, int[] edgeTargets,
+                                        int[] firstEnd, int[] counts, int[] childStart, int[] children) {
+        int states = firstEnd.length;
+        boolean valid = edgeStart[0] == 0 && edgeStart[states] == edgeChars.length
+                && childStart[0] == 0 && childStart[states] == children.length;
+        for (int s = 0; s < states && valid; s++) {
+            valid = edgeStart[s] <= edgeStart[s + 1] && childStart[s] <= childStart[s + 1];
+            for (int e = edgeStart[s]; e < edgeStart[s + 1] && valid; e++) {
+                valid = edgeTargets[e] > 0 && edgeTargets[e] < states
+                        && (e == edgeStart[s] || edgeChars[e - 1] < edgeChars[e]);
+            }
+            int end = firstEnd[s] < 0 ? ~firstEnd[s] : firstEnd[s];
+            valid &= s == 0 || end < textLength;
+        }
+        // breadth-first order from the root; a state seen twice or never means no tree
+        int[] order = new int[states];
+        boolean[] seen = new boolean[states];
+        seen[0] = true;
+        int size = 1;
+        for (int k = 0; k < size && valid; k++) {
+            int s = order[k];
+            for (int c = childStart[s]; c < childStart[s + 1] && valid; c++) {
+                int child = children[c];
+                valid = child > 0 && child < states && !seen[child];
+                if (valid) {
+                    seen[child] = true;
+                    order[size++] = child;
+                }
+            }
+        }
+        valid &= size == states;
+        // occurrences below each state, summed leaves first
+        long[] below = new long[states];
+        for (int k = states - 1; k > 0 && valid; k--) {
+            int s = order[k];
+            for (int c = childStart[s]; c < childStart[s + 1]; c++) {
+                below[s] += below[children[c]];
+            }
+            below[s] += firstEnd[s] >= 0 ? 1 : 0;
+            valid = counts[s] == below[s];
+        }
+        return valid;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in, int length) throws IOException {
+        int[] values = new int[length];
+        for (int k = 0; k < length; k++) {
+            values[k] = in.readInt();
+        }
+        return values;
+    }
+
+    /**
+     * Online construction (Blumer et al.), one state per text char plus clones.
+     * Transitions are kept in per-state linked lists while building and compacted
+     * into sorted arrays at the end.
+     */
+    private static final class Builder {
+        private final CharSequence text;
+        private final int[] length;
+        private final int[] link;
+        private final int[] firstEnd;
+        private final int[] edgeHead;
+        private int states;
+        private char[] edgeChar;
+        private int[] edgeTarget;
+        private int[] edgeNext;
+        private int edges;
+
+        Builder(CharSequence text) {
+            this.text = text;
+            int capacity = Math.max(2, 2 * text.length());
+            this.length = new int[capacity];
+            this.link = new int[capacity];
+            this.firstEnd = new int[capacity];
+            this.edgeHead = new int[capacity];
+            int edgeCapacity = Math.max(4, text.length() + 16);
+            this.edgeChar = new char[edgeCapacity];
+            this.edgeTarget = new int[edgeCapacity];
+            this.edgeNext = new int[edgeCapacity];
+        }
+
+        SuffixAutomatonIndex build() {
+            link[0] = -1;
+            edgeHead[0] = -1;
+            states = 1;
+            int last = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                int current = newState(length[last] + 1, i);
+                int p = last;
+                while (p != -1 && target(p, c) < 0) {
+                    addEdge(p, c, current);
+                    p = link[p];
+                }
+                if (p == -1) {
+                    link[current] = 0;
+                } else {
+                    int q = target(p, c);
+                    if (length[p] + 1 == length[q]) {
+                        link[current] = q;
+                    } else {
+                        int end = firstEnd[q] >= 0 ? firstEnd[q] : ~firstEnd[q];
+                        int clone = newState(length[p] + 1, ~end);
+                        for (int e = edgeHead[q]; e != -1; e = edgeNext[e]) {
+                            addEdge(clone, edgeChar[e], edgeTarget[e]);
+                        }
+                        link[clone] = link[q];
+                        while (p != -1 && target(p, c) == q) {
+                            retarget(p, c, clone);
+                            p = link[p];
+                        }
+                        link[q] = clone;
+                        link[current] = clone;
+                    }
+                }
+                last = current;
+            }
+            return compact();
+        }
+
+        private int newState(int len, int end) {
+            int s = states++;
+            length[s] = len;
+            firstEnd[s] = end;
+            edgeHead[s] = -1;
+            return s;
+        }
+
+        private int target(int state, char c) {
+            for (int e = edgeHead[state]; e != -1; e = edgeNext[e]) {
+                if (edgeChar[e] == c) {
+                    return edgeTarget[e];
+                }
+            }
+            return -1;
+        }
+
+        private void retarget(int state, char c, int to) {
+            for (int e = edgeHead[state]; e != -1; e = edgeNext[e]) {
+                if (edgeChar[e] == c) {
+                    edgeTarget[e] = to;
+                    return;
+                }
+            }
+        }
+
+        private void addEdge(int state, char c, int to) {
+            if (edges == edgeChar.length) {
+                int capacity = edges + (edges >> 1);
+                edgeChar = Arrays.copyOf(edgeChar, capacity);
+                edgeTarget = Arrays.copyOf(edgeTarget, capacity);
+                edgeNext = Arrays.copyOf(edgeNext, capacity);
+            }
+            edgeChar[edges] = c;
+            edgeTarget[edges] = to;
+            edgeNext[edges] = edgeHead[state];
+            edgeHead[state] = edges++;
+        }
+
+        private SuffixAutomatonIndex compact() {
+            int n = states;
+
+            // transitions grouped by state and sorted by char
+            int[] edgeStart = new int[n + 1];
+            char[] chars = new char[edges];
+            int[] targets = new int[edges];
+            int position = 0;
+            for (int s = 0; s < n; s++) {
+                edgeStart[s] = position;
+                for (int e = edgeHead[s]; e != -1; e = edgeNext[e]) {
+                    // insertion sort, out-degrees are small
+                    int k = position++;
+                    while (k > edgeStart[s] && chars[k - 1] > edgeChar[e]) {
+                        chars[k] = chars[k - 1];
+                        targets[k] = targets[k - 1];
+                        k--;
+                    }
+                    chars[k] = edgeChar[e];
+                    targets[k] = edgeTarget[e];
+                }
+            }
+            edgeStart[n] = position;
+
+            // occurrence counts: each non-clone state is one end position, summed up the
+            // suffix links from the longest states down
+            int[] counts = new int[n];
+            int[] byLength = new int[text.length() + 2];
+            for (int s = 0; s < n; s++) {
+                byLength[length[s] + 1]++;
+            }
+            for (int len = 1; len < byLength.length; len++) {
+                byLength[len] += byLength[len - 1];
+            }
+            int[] order = new int[n];
+            for (int s = 0; s < n; s++) {
+                order[byLength[length[s]]++] = s;
+            }
+            for (int s = 1; s < n; s++) {
+                counts[s] = firstEnd[s] >= 0 ? 1 : 0;
+            }
+            for (int k = n - 1; k > 0; k--) {
+                int s = order[k];
+                counts[link[s]] += counts[s];
+            }
+
+            // suffix-link tree as child lists
+            int[] childStart = new int[n + 1];
+            for (int s = 1; s < n; s++) {
+                childStart[link[s] + 1]++;
+            }
+            for (int s = 0; s < n; s++) {
+                childStart[s + 1] += childStart[s];
+            }
+            int[] children = new int[n - 1];
+            int[] fill = Arrays.copyOf(childStart, n);
+            for (int s = 1; s < n; s++) {
+                children[fill[link[s]]++] = s;
+            }
+
+            return new SuffixAutomatonIndex(text.length(), edgeStart, chars, targets,
+                    Arrays.copyOf(firstEnd, n), counts, childStart, children);
+        }
+    }
+}
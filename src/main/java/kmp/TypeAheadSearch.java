@@ -0,0 +1,119 @@
+package kmp;
+
+import java.util.ArrayDeque;
+
+/**
+ * Incremental search for a pattern typed one character at a time, as in find-as-you-type.
+ *
+ * Every match of pattern + c starts at a match of pattern, so appending c filters the
+ * current matches by the char that follows each of them, in time proportional to the
+ * number of matches rather than the text length. The scan state j at the end of the text
+ * stays valid across the append, so text added later is picked up by {@link #refresh()}
+ * from where the last scan stopped. The text may be a growing StringBuilder but must
+ * never shrink or change what was already scanned.
+ * Each append saves the previous match set and scan state, so {@link #deleteLast()}
+ * restores them and only rescans text that arrived in between.
+ * Not thread-safe.
+ */
+public final class TypeAheadSearch {
+    private final CharSequence text;
+    private final PatternBuilder pattern = new PatternBuilder();
+    private final ArrayDeque<Level> history = new ArrayDeque<>();
+    private MatchBuffer matches = new MatchBuffer();
+    // text[0, scanned) has been searched and state is the KMP state after it
+    private int scanned;
+    private int state;
+
+    private static final class Level {
+        final MatchBuffer matches;
+        final int scanned;
+        final int state;
+
+        Level(MatchBuffer matches, int scanned, int state) {
+            this.matches = matches;
+            this.scanned = scanned;
+            this.state = state;
+        }
+    }
+
+    public TypeAheadSearch(CharSequence text) {
+        this.text = text;
+        this.scanned = text.length();
+    }
+
+    // extends the pattern by c and returns the new number of matches
+    public int append(char c) {
+        history.push(new Level(matches, scanned, state));
+        int m = pattern.length();
+        pattern.append(c);
+        MatchBuffer previous = matches;
+        matches = new MatchBuffer(Math.max(1, previous.size()));
+
+        if (m == 0) {
+            state = 0;
+            scanned = 0;
+            return refresh();
+        }
+
+        // a match of the old pattern ending right at the scan boundary cannot be decided yet;
+        // the resumed scan finds it from state m
+        for (int k = 0; k < previous.size(); k++) {
+            int p = previous.get(k);
+            if (p + m < scanned && text.charAt(p + m) == c) {
+                matches.onMatch(p);
+            }
+        }
+        // prefixes up to m chars are shared, so the state only changes when the new pattern
+        // itself ends at the boundary
+        int found = matches.size();
+        if (found > 0 && matches.get(found - 1) + m + 1 == scanned) {
+            state = m + 1;
+        }
+        return refresh();
+    }
+
+    // removes the last pattern char and returns the restored number of matches
+    public int deleteLast() {
+        if (history.isEmpty()) {
+            throw new IllegalStateException("Pattern is empty");
+        }
+        pattern.deleteLast();
+        Level previous = history.pop();
+        matches = previous.matches;
+        scanned = previous.scanned;
+        state = previous.state;
+        return refresh();
+    }
+
+    // searches text appended since the last call and returns the total number of matches
+    public int refresh() {
+        int n = text.length();
+        int m = pattern.length();
+        if (m == 0) {
+            scanned = n;
+            return 0;
+        }
+        int j = state;
+        for (int i = scanned; i < n; i++) {
+            j = pattern.next(j, text.charAt(i));
+            if (j == m) {
+                matches.onMatch(i - m + 1);
+            }
+        }
+        state = j;
+        scanned = n;
+        return matches.size();
+    }
+
+    public String pattern() {
+        return pattern.toString();
+    }
+
+    public int count() {
+        return matches.size();
+    }
+
+    public int[] matches() {
+        return matches.toArray();
+    }
+}
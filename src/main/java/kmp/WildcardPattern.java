@@ -0,0 +1,331 @@
+package kmp;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pattern with single-character wildcards and character classes:
+ * <pre>
+ *   ?          any single char
+ *   [abc]      one of a, b or c
+ *   [a-z0-9_]  ranges and single chars can be mixed
+ *   [^0-9]     any char except the listed ones
+ *   \x         the char x literally, e.g. \? \[ \] \\ (also inside classes)
+ * </pre>
+ * Every element matches exactly one char, so a match always spans {@link #length()} chars.
+ *
+ * Patterns without wildcards or classes are delegated to the KMP engine. Otherwise the
+ * classic failure function cannot be used: a text char that matched [ab] at one position
+ * is not known to match [bc] at another, so skipping by lps values could miss matches,
+ * and any sound fallback would have to re-read text. These patterns are matched with the
+ * bit-parallel Shift-And automaton instead, which tracks every live prefix at once and
+ * never re-reads the text: O(n) for patterns up to 64 elements and O(n * ceil(m / 64))
+ * beyond that. Text chars >= 256 cost one extra check per pattern position that can match them.
+ */
+public final class WildcardPattern {
+    private static final int ALPHABET = 256;
+
+    private final String pattern;
+    private final int m;
+    // exact pattern when there are no wildcards or classes, otherwise null
+    private final CompiledPattern literal;
+    private final int words;
+    // words bit masks per char below ALPHABET: bit k set when element k matches the char
+    private final long[] lowMasks;
+    // elements that can match chars >= ALPHABET, checked one by one for such chars
+    private final int[] highPositions;
+    private final Element[] elements;
+
+    private WildcardPattern(String pattern, List<Element> parsed) {
+        this.pattern = pattern;
+        this.m = parsed.size();
+        this.elements = parsed.toArray(new Element[0]);
+
+        boolean allLiteral = true;
+        StringBuilder literalText = new StringBuilder(m);
+        for (Element element : elements) {
+            if (element.literal() < 0) {
+                allLiteral = false;
+                break;
+            }
+            literalText.append((char) element.literal());
+        }
+        this.literal = allLiteral ? KMPAlgorithm.compile(literalText.toString()) : null;
+
+        this.words = Math.max(1, (m + 63) >>> 6);
+        if (literal != null) {
+            this.lowMasks = null;
+            this.highPositions = null;
+            return;
+        }
+        this.lowMasks = new long[ALPHABET * words];
+        List<Integer> high = new ArrayList<>();
+        for (int k = 0; k < m; k++) {
+            for (int c = 0; c < ALPHABET; c++) {
+                if (elements[k].matches((char) c)) {
+                    lowMasks[c * words + (k >>> 6)] |= 1L << (k & 63);
+                }
+            }
+            if (elements[k].matchesAbove(ALPHABET - 1)) {
+                high.add(k);
+            }
+        }
+        this.highPositions = high.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public static WildcardPattern compile(String pattern) {
+        String source = pattern == null ? "" : pattern;
+        return new WildcardPattern(source, parse(source));
+    }
+
+    public String pattern() {
+        return pattern;
+    }
+
+    // number of chars a match spans
+    public int length() {
+        return m;
+    }
+
+    // true when the pattern has no wildcards or classes and runs on the KMP engine
+    public boolean isLiteral() {
+        return literal != null;
+    }
+
+    public int indexOf(CharSequence text) {
+        return indexOf(text, 0);
+    }
+
+    public int indexOf(CharSequence text, int fromIndex) {
+        if (text == null) {
+            return -1;
+        }
+        int n = text.length();
+        if (fromIndex < 0) {
+            fromIndex = 0;
+        }
+        if (m == 0) {
+            return Math.min(fromIndex, n);
+        }
+        if (literal != null) {
+            if (text instanceof String) {
+                return literal.indexOf((String) text, fromIndex);
+            }
+            int index = literal.indexOf(CharBuffer.wrap(text, Math.min(fromIndex, n), n));
+            return index == -1 ? -1 : index + fromIndex;
+        }
+        MatchBuffer first = new MatchBuffer(1);
+        scan(text, fromIndex, first, true);
+        return first.isEmpty() ? -1 : first.get(0);
+    }
+
+    public int[] findAll(CharSequence text) {
+        MatchBuffer matches = new MatchBuffer();
+        findAll(text, matches);
+        return matches.toArray();
+    }
+
+    public int findAll(CharSequence text, MatchSink sink) {
+        if (text == null || m == 0) {
+            return 0;
+        }
+        if (literal != null) {
+            return literal.findAll(text, sink);
+        }
+        return scan(text, 0, sink, false);
+    }
+
+    public int count(CharSequence text) {
+        return findAll(text, offset -> { });
+    }
+
+    private int scan(CharSequence text, int from, MatchSink sink, boolean firstOnly) {
+        return words == 1
+                ? scanSingleWord(text, from, sink, firstOnly)
+                : scanMultiWord(text, from, sink, firstOnly);
+    }
+
+    // state bit k is set when the last k + 1 chars match the first k + 1 elements
+    private int scanSingleWord(CharSequence text, int from, MatchSink sink, boolean firstOnly) {
+        int n = text.length();
+        long last = 1L << (m - 1);
+        long state = 0;
+        long[] high = new long[1];
+        int count = 0;
+        for (int i = from; i < n; i++) {
+            char c = text.charAt(i);
+            long mask = c < ALPHABET ? lowMasks[c] : highMask(c, high)[0];
+            state = ((state << 1) | 1L) & mask;
+            if ((state & last) != 0) {
+                sink.onMatch(i - m + 1);
+                count++;
+                if (firstOnly) {
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private int scanMultiWord(CharSequence text, int from, MatchSink sink, boolean firstOnly) {
+        int n = text.length();
+        int lastWord = (m - 1) >>> 6;
+        long last = 1L << ((m - 1) & 63);
+        long[] state = new long[words];
+        long[] high = new long[words];
+        int count = 0;
+        for (int i = from; i < n; i++) {
+            char c = text.charAt(i);
+            boolean low = c < ALPHABET;
+            if (!low) {
+                highMask(c, high);
+            }
+            long carry = 1L;
+            for (int w = 0; w < words; w++) {
+                long word = state[w];
+                long mask = low ? lowMasks[c * words + w] : high[w];
+                state[w] = ((word << 1) | carry) & mask;
+                carry = word >>> 63;
+            }
+            if ((state[lastWord] & last) != 0) {
+                sink.onMatch(i - m + 1);
+                count++;
+                if (firstOnly) {
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    // fills the reusable mask array for a char >= ALPHABET
+    private long[] highMask(char c, long[] mask) {
+        Arrays.fill(mask, 0L);
+        for (int k : highPositions) {
+            if (elements[k].matches(c)) {
+                mask[k >>> 6] |= 1L << (k & 63);
+            }
+        }
+        return mask;
+    }
+
+    private static List<Element> parse(String pattern) {
+        List<Element> elements = new ArrayList<>();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '?') {
+                elements.add(Element.ANY);
+                i++;
+            } else if (c == '[') {
+                i = parseClass(pattern, i, elements);
+            } else if (c == '\\') {
+                if (i + 1 >= pattern.length()) {
+                    throw new IllegalArgumentException("Dangling escape at index " + i + ": " + pattern);
+                }
+                elements.add(Element.of(pattern.charAt(i + 1)));
+                i += 2;
+            } else {
+                elements.add(Element.of(c));
+                i++;
+            }
+        }
+        return elements;
+    }
+
+    // parses [...] starting at the '[' and returns the index after the closing ']'
+    private static int parseClass(String pattern, int start, List<Element> elements) {
+        int i = start + 1;
+        boolean negated = i < pattern.length() && pattern.charAt(i) == '^';
+        if (negated) {
+            i++;
+        }
+        StringBuilder ranges = new StringBuilder();
+        while (true) {
+            if (i >= pattern.length()) {
+                throw new IllegalArgumentException("Unclosed character class at index " + start + ": " + pattern);
+            }
+            char c = pattern.charAt(i);
+            if (c == ']') {
+                break;
+            }
+            if (c == '\\') {
+                if (i + 1 >= pattern.length()) {
+                    throw new IllegalArgumentException("Dangling escape at index " + i + ": " + pattern);
+                }
+                c = pattern.charAt(++i);
+            }
+            char hi = c;
+            if (i + 2 < pattern.length() && pattern.charAt(i + 1) == '-' && pattern.charAt(i + 2) != ']') {
+                i += 2;
+                hi = pattern.charAt(i);
+                if (hi == '\\' && i + 1 < pattern.length()) {
+                    hi = pattern.charAt(++i);
+                }
+                if (hi < c) {
+                    throw new IllegalArgumentException("Invalid range " + c + "-" + hi + " in: " + pattern);
+                }
+            }
+            ranges.append(c).append(hi);
+            i++;
+        }
+        if (ranges.length() == 0 && !negated) {
+            throw new IllegalArgumentException("Empty character class at index " + start + ": " + pattern);
+        }
+        elements.add(new Element(ranges.toString().toCharArray(), negated));
+        return i + 1;
+    }
+
+    /**
+     * One pattern position: a set of inclusive char ranges, optionally negated.
+     */
+    private static final class Element {
+        static final Element ANY = new Element(new char[0], true);
+
+        // lo/hi pairs
+        private final char[] ranges;
+        private final boolean negated;
+
+        Element(char[] ranges, boolean negated) {
+            this.ranges = ranges;
+            this.negated = negated;
+        }
+
+        static Element of(char c) {
+            return new Element(new char[]{c, c}, false);
+        }
+
+        // the single char this element matches, or -1
+        int literal() {
+            return !negated && ranges.length == 2 && ranges[0] == ranges[1] ? ranges[0] : -1;
+        }
+
+        boolean matches(char c) {
+            for (int k = 0; k < ranges.length; k += 2) {
+                if (c >= ranges[k] && c <= ranges[k + 1]) {
+                    return !negated;
+                }
+            }
+            return negated;
+        }
+
+        boolean matchesAbove(int limit) {
+            if (negated) {
+                return true;
+            }
+            for (int k = 1; k < ranges.length; k += 2) {
+                if (ranges[k] > limit) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return (negated ? "^" : "") + Arrays.toString(ranges);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package kmp;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API version of {@link BytePrefilter#indexOf}. Compiled only by the vector
+ * profile into META-INF/versions/17 and looked up reflectively, so the Java 11
+ * baseline never loads it.
+ */
+final class VectorPrefilter {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private VectorPrefilter() {
+    }
+
+    static int indexOf(byte[] a, int from, int to, byte b) {
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length()) {
+            VectorMask<Byte> equal = ByteVector.fromArray(SPECIES, a, i).eq(b);
+            if (equal.anyTrue()) {
+                return i + equal.firstTrue();
+            }
+        }
+        for (; i < to; i++) {
+            if (a[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,76 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class JsonRecordReaderTest {
+    @Test
+    @DisplayName("Test reading json lines and pretty-printed records")
+    public void testRecords() throws IOException {
+        String input = "{\"test_id\": \"a\", \"n\": -12.5e3, \"ok\": true, \"none\": null}\n"
+                + "{\n  \"test_id\": \"b\",\n  \"text\": \"x, y}\"\n}\n\n{}";
+        try (JsonRecordReader reader = new JsonRecordReader(new StringReader(input))) {
+            Map<String, String> first = reader.next();
+            assertEquals("a", first.get("test_id"), "String value should be read");
+            assertEquals("-12.5e3", first.get("n"), "Number should keep its literal text");
+            assertEquals("true", first.get("ok"), "Boolean should keep its literal text");
+            assertTrue(first.containsKey("none"), "Null field should be present");
+            assertNull(first.get("none"), "Null should map to a Java null");
+            Map<String, String> second = reader.next();
+            assertEquals("x, y}", second.get("text"), "Separators inside strings should be kept");
+            assertTrue(reader.next().isEmpty(), "Empty object should be read");
+            assertNull(reader.next(), "End of input should return null");
+        }
+    }
+
+    @Test
+    @DisplayName("Test escape handling")
+    public void testEscapes() throws IOException {
+        String input = "{\"s\": \"q\\\" b\\\\ s\\/ \\b\\f\\n\\r\\t \\u0041\\ud83d\\ude00\"}";
+        Map<String, String> record = new JsonRecordReader(new StringReader(input)).next();
+        assertEquals("q\" b\\ s/ \b\f\n\r\t A\ud83d\ude00", record.get("s"), "Escapes should be decoded");
+    }
+
+    @Test
+    @DisplayName("Test builder output round-trips through the reader")
+    public void testRoundTrip() throws IOException {
+        String text = "quote\" slash\\ newline\n tab\t bell\u0007 \u0410";
+        String json = new JsonRecordBuilder()
+                .field("text", text)
+                .field("index", -1)
+                .field("found", false)
+                .field("lps", new int[]{0, 1, 2})
+                .field("missing", (String) null)
+                .toString();
+        assertFalse(json.contains("\n"), "Record should fit on one line");
+        assertEquals("{\"text\":\"quote\\\" slash\\\\ newline\\n tab\\t bell\\u0007 \u0410\",\"index\":-1,"
+                + "\"found\":false,\"lps\":[0,1,2],\"missing\":null}", json, "Builder should escape per RFC 8259");
+        Map<String, String> record = new JsonRecordReader(new StringReader(json.replace(",\"lps\":[0,1,2]", ""))).next();
+        assertEquals(text, record.get("text"), "Text should survive a round trip");
+        assertEquals("-1", record.get("index"), "Number should survive a round trip");
+    }
+
+    @Test
+    @DisplayName("Test malformed input reports the line")
+    public void testMalformed() {
+        JsonRecordReader reader = new JsonRecordReader(new StringReader("{\"a\": \"1\"}\n{\"a\" 1}"));
+        IOException error = assertThrows(IOException.class, () -> {
+            reader.next();
+            reader.next();
+        }, "Missing colon should fail");
+        assertTrue(error.getMessage().startsWith("line 2"), "Error should name the line: " + error.getMessage());
+        assertThrows(IOException.class, () -> new JsonRecordReader(new StringReader("{\"a\": \"open")).next(),
+                "Unterminated string should fail");
+        assertThrows(IOException.class, () -> new JsonRecordReader(new StringReader("{\"a\": [1]}")).next(),
+                "Nested arrays should be rejected");
+        assertThrows(IOException.class, () -> new JsonRecordReader(new StringReader("{\"a\": tru}")).next(),
+                "Invalid literal should fail");
+        assertThrows(IOException.class, () -> new JsonRecordReader(new StringReader("{\"a\": \"\\x\"}")).next(),
+                "Invalid escape should fail");
+    }
+}
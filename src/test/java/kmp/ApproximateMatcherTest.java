@@ -0,0 +1,104 @@
+package kmp;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static kmp.TestStrings.randomString;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class ApproximateMatcherTest {
+    @Test
+    @DisplayName("Test hamming matches report start and mismatches")
+    public void testHamming() {
+        ApproximateMatcher matcher = ApproximateMatcher.hamming("WORLD", 1);
+        List<String> seen = new ArrayList<>();
+        int count = matcher.findAll("HELLO WORLD, HELLO WORD, HELLO WORLD", (offset, distance) -> seen.add(offset + ":" + distance));
+        assertEquals(2, count, "Exact windows should match and WORD, lacking a char, should not");
+        assertEquals(List.of("6:0", "31:0"), seen, "Offsets should be window starts");
+        assertEquals(List.of("6:1"), collect(ApproximateMatcher.hamming("WARLD", 1), "HELLO WORLD"), "One substitution should be allowed");
+        assertEquals(0, ApproximateMatcher.hamming("WAALD", 1).count("HELLO WORLD"), "Two substitutions should be rejected");
+    }
+
+    @Test
+    @DisplayName("Test edit distance matches report end and edits")
+    public void testEditDistance() {
+        ApproximateMatcher matcher = ApproximateMatcher.editDistance("WORLD", 1);
+        List<String> seen = collect(matcher, "A WORD B");
+        assertEquals(List.of("6:1"), seen, "Missing char should cost one edit, reported at the end");
+        assertTrue(collect(matcher, "A WORLD B").contains("7:0"), "Exact match should end at 7 with distance 0");
+        assertEquals(0, ApproximateMatcher.editDistance("", 2).count("ABC"), "Empty pattern should report nothing");
+        assertThrows(IllegalArgumentException.class, () -> ApproximateMatcher.hamming("A", -1), "Negative k should fail");
+    }
+
+    @Test
+    @DisplayName("Test bit-parallel and fallback paths against brute force")
+    public void testAgainstBruteForce() {
+        Random random = new Random(21);
+        for (int round = 0; round < 300; round++) {
+            int m = round % 3 == 0 ? 60 + random.nextInt(20) : 1 + random.nextInt(10);
+            String pattern = randomString(random, m, 3);
+            String text = randomString(random, 200, 3) + pattern + randomString(random, 50, 3);
+            int k = random.nextInt(Math.min(m, 4) + 1);
+            assertEquals(bruteHamming(pattern, text, k), collect(ApproximateMatcher.hamming(pattern, k), text),
+                    "Hamming should agree for m=" + m + ", k=" + k);
+            assertEquals(bruteEdit(pattern, text, k), collect(ApproximateMatcher.editDistance(pattern, k), text),
+                    "Edit distance should agree for m=" + m + ", k=" + k);
+        }
+    }
+
+    @Test
+    @DisplayName("Test chars outside the byte range")
+    public void testNonLatin() {
+        assertEquals(List.of("2:1"), collect(ApproximateMatcher.hamming("ПРИВЕТ", 1), "ХХПРИВЕДХХ"),
+                "Hamming should handle chars >= 256");
+        assertTrue(collect(ApproximateMatcher.editDistance("ПРИВЕТ", 1), "ХХПРИВЕХХ").contains("8:1"),
+                "Edit distance should handle chars >= 256");
+    }
+
+    private static List<String> collect(ApproximateMatcher matcher, String text) {
+        List<String> seen = new ArrayList<>();
+        matcher.findAll(text, (offset, distance) -> seen.add(offset + ":" + distance));
+        return seen;
+    }
+
+    private static List<String> bruteHamming(String pattern, String text, int k) {
+        List<String> seen = new ArrayList<>();
+        for (int s = 0; s + pattern.length() <= text.length(); s++) {
+            int d = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                if (text.charAt(s + i) != pattern.charAt(i)) {
+                    d++;
+                }
+            }
+            if (d <= k) {
+                seen.add(s + ":" + d);
+            }
+        }
+        return seen;
+    }
+
+    // full Sellers table: row 0 is all zeros so a match may start anywhere
+    private static List<String> bruteEdit(String pattern, String text, int k) {
+        int m = pattern.length();
+        int[][] d = new int[m + 1][text.length() + 1];
+        for (int i = 0; i <= m; i++) {
+            d[i][0] = i;
+        }
+        List<String> seen = new ArrayList<>();
+        for (int j = 1; j <= text.length(); j++) {
+            for (int i = 1; i <= m; i++) {
+                int cost = pattern.charAt(i - 1) == text.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(d[i - 1][j - 1] + cost, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+            }
+            if (d[m][j] <= k) {
+                seen.add(j + ":" + d[m][j]);
+            }
+        }
+        return seen;
+    }
+}
@@ -0,0 +1,157 @@
+package kmp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class BatchSearchTest {
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Test batch results keep input order")
+    public void testResultsInInputOrder() throws InterruptedException {
+        List<String> texts = new ArrayList<>();
+        for (int k = 0; k < 200; k++) {
+            texts.add("X".repeat(k % 7) + "ERROR" + " WARN".repeat(k % 3));
+        }
+        BatchSearch batch = new BatchSearch(
+                List.of(KMPAlgorithm.compile("ERROR"), KMPAlgorithm.compile("WARN")), executor, 8);
+
+        List<BatchSearch.Result> results = batch.searchAll(texts);
+        assertEquals(texts.size(), results.size(), "Every text should have a result");
+        for (int k = 0; k < texts.size(); k++) {
+            BatchSearch.Result result = results.get(k);
+            assertEquals(k, result.index(), "Results should be in input order");
+            assertArrayEquals(new int[]{k % 7}, result.matches(0), "First pattern offsets should match");
+            assertEquals(k % 3, result.count(1), "Second pattern count should match");
+        }
+    }
+
+    @Test
+    @DisplayName("Test batch sends String texts through the compiled engine and metrics")
+    public void testStringPath() throws InterruptedException {
+        SearchMetrics metrics = new SearchMetrics();
+        KMPAlgorithm.setMetrics(metrics);
+        try {
+            // every text is adversarial for horspool, so the String path shows up as fallbacks
+            String patternText = "A".repeat(50) + "B" + "A".repeat(49);
+            CompiledPattern horspool = KMPAlgorithm.compile(patternText, Engine.HORSPOOL);
+            List<String> texts = new ArrayList<>();
+            for (int k = 0; k < 20; k++) {
+                texts.add("A".repeat(5000) + patternText);
+            }
+            List<BatchSearch.Result> results = new BatchSearch(List.of(horspool), executor, 4).searchAll(texts);
+            for (BatchSearch.Result result : results) {
+                assertArrayEquals(new int[]{5000}, result.matches(0), "Matches should be unchanged");
+            }
+            PatternMetrics counters = metrics.pattern(patternText);
+            assertNotNull(counters, "Batch searches should be recorded per pattern");
+            assertEquals(texts.size(), counters.calls(), "Every String text should be one recorded call");
+            assertEquals(texts.size(), counters.horspoolFallbacks(), "Every text should run the horspool engine");
+
+            new BatchSearch(List.of(horspool), executor, 4).searchAll(List.of(new StringBuilder(texts.get(0))));
+            assertEquals(texts.size(), counters.calls(), "Other char sequences should keep the unmetered path");
+        } finally {
+            KMPAlgorithm.setMetrics(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Test batch limits texts in flight")
+    public void testBackpressure() throws InterruptedException {
+        AtomicInteger pulled = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+        AtomicInteger consumed = new AtomicInteger();
+        Iterator<Supplier<String>> texts = new Iterator<Supplier<String>>() {
+            @Override
+            public boolean hasNext() {
+                return pulled.get() < 100;
+            }
+
+            @Override
+            public Supplier<String> next() {
+                int ahead = pulled.incrementAndGet() - consumed.get();
+                maxAhead.accumulateAndGet(ahead, Math::max);
+                return () -> "ABAB";
+            }
+        };
+
+        new BatchSearch(List.of(KMPAlgorithm.compile("AB")), executor, 5)
+                .forEachOrdered(texts, result -> consumed.incrementAndGet());
+        assertEquals(100, consumed.get(), "Every text should be consumed");
+        assertTrue(maxAhead.get() <= 6, "At most maxInFlight texts should be pending, was " + maxAhead.get());
+    }
+
+    @Test
+    @DisplayName("Test batch propagates supplier failures")
+    public void testFailurePropagates() {
+        List<Supplier<String>> texts = List.of(() -> "OK", () -> {
+            throw new IllegalStateException("cannot load");
+        });
+        BatchSearch batch = new BatchSearch(List.of(KMPAlgorithm.compile("OK")), executor, 2);
+        assertThrows(IllegalStateException.class, () -> batch.forEachOrdered(texts.iterator(), result -> { }),
+                "Supplier exception should reach the caller");
+    }
+
+    @Test
+    @DisplayName("Test ordered window runs arbitrary tasks in input order")
+    public void testOrderedTasks() throws InterruptedException {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int k = 0; k < 50; k++) {
+            int value = k;
+            tasks.add(() -> {
+                // later tasks finish first
+                Thread.sleep((50 - value) % 5);
+                return value * value;
+            });
+        }
+        List<Integer> results = new ArrayList<>();
+        BatchSearch.forEachOrdered(executor, 4, tasks.iterator(), results::add);
+        for (int k = 0; k < 50; k++) {
+            assertEquals(k * k, results.get(k), "Task results should be consumed in input order");
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> BatchSearch.forEachOrdered(executor, 0, tasks.iterator(), results::add),
+                "Window size must be positive");
+    }
+
+    @Test
+    @DisplayName("Test default executor runs a batch")
+    public void testDefaultExecutor() throws InterruptedException {
+        ExecutorService defaultExecutor = BatchSearch.newDefaultExecutor();
+        try {
+            if (Runtime.version().feature() < 21) {
+                assertTrue(defaultExecutor instanceof ThreadPoolExecutor, "JDKs before 21 should get the fixed pool");
+            }
+            List<BatchSearch.Result> results = new BatchSearch(List.of(KMPAlgorithm.compile("B")), defaultExecutor, 4)
+                    .searchAll(List.of("ABC", "BBB", "CCC"));
+            assertEquals(3, results.get(1).count(0), "Default executor should produce the same results");
+        } finally {
+            defaultExecutor.shutdown();
+        }
+    }
+}
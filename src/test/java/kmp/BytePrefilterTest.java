@@ -0,0 +1,81 @@
+package kmp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class BytePrefilterTest {
+    private static final MatchOptions PREFILTER = MatchOptions.DEFAULT.withPrefilter(true);
+
+    @Test
+    @DisplayName("Test vector prefilter is active when requested")
+    public void testVectorActive() {
+        if (Boolean.getBoolean("kmp.expectVector")) {
+            assertTrue(BytePrefilter.VECTORIZED, "Vector profile should load the SIMD prefilter");
+        }
+    }
+
+    @Test
+    @DisplayName("Test prefilter finds bytes at every position")
+    public void testIndexOfAllPositions() {
+        byte[] data = new byte[200];
+        for (int target = 0; target < data.length; target++) {
+            data[target] = 7;
+            assertEquals(target, BytePrefilter.indexOf(data, 0, data.length, (byte) 7), "Should find byte at " + target);
+            assertEquals(-1, BytePrefilter.indexOf(data, target + 1, data.length, (byte) 7), "Should respect from");
+            assertEquals(-1, BytePrefilter.indexOf(data, 0, target, (byte) 7), "Should respect to");
+            data[target] = 0;
+        }
+        data[150] = (byte) 0xF0;
+        assertEquals(150, BytePrefilter.indexOf(data, 3, 200, (byte) 0xF0), "Negative bytes should be found");
+    }
+
+    @Test
+    @DisplayName("Test prefiltered search matches the scalar path")
+    public void testPrefilterMatchesScalar() {
+        Random random = new Random(3);
+        for (int round = 0; round < 200; round++) {
+            StringBuilder sb = new StringBuilder();
+            for (int k = 0; k < 1000; k++) {
+                sb.append(random.nextInt(20) == 0 ? 'Q' : (char) ('a' + random.nextInt(3)));
+            }
+            String text = sb.toString();
+            byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+            String patternText = "Q" + text.substring(random.nextInt(900), 900 + random.nextInt(3));
+
+            CompiledPattern plain = KMPAlgorithm.compile(patternText);
+            CompiledPattern filtered = KMPAlgorithm.compile(patternText, PREFILTER);
+            int[] expected = plain.findAll(text);
+
+            assertArrayEquals(expected, filtered.findAll(text), "String path should agree");
+            assertEquals(plain.indexOf(text, 17), filtered.indexOf(text, 17), "String indexOf should agree");
+            assertEquals(expected.length, filtered.count(text), "count should agree");
+
+            MatchBuffer fromBytes = new MatchBuffer();
+            filtered.findAll(bytes, 0, bytes.length, fromBytes);
+            assertArrayEquals(expected, fromBytes.toArray(), "byte[] path should agree");
+            assertEquals(plain.indexOf(bytes, 5, 900), filtered.indexOf(bytes, 5, 900), "byte[] indexOf should agree");
+
+            List<Long> streamed = new ArrayList<>();
+            StreamMatcher matcher = filtered.matcher();
+            for (int start = 0; start < bytes.length; start += 97) {
+                matcher.feed(bytes, start, Math.min(97, bytes.length - start), streamed::add);
+            }
+            assertEquals(expected.length, streamed.size(), "Streamed bytes should agree");
+        }
+    }
+
+    @Test
+    @DisplayName("Test prefilter is skipped for case folding")
+    public void testPrefilterWithFolding() {
+        CompiledPattern pattern = KMPAlgorithm.compile("error", PREFILTER.withCaseFolding(CaseFolding.ASCII));
+        assertEquals(4, pattern.indexOf("xxx ERROR"), "Folded pattern should still match upper case");
+    }
+}
@@ -0,0 +1,205 @@
+package kmp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static kmp.TestStrings.assertMatchesLps;
+import static kmp.TestStrings.forRandomCases;
+import static kmp.TestStrings.randomString;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class CompiledPatternTest {
+    @Test
+    @DisplayName("Test compiled pattern finds first occurrence")
+    public void testIndexOf() {
+        CompiledPattern pattern = KMPAlgorithm.compile("ABABCABAB");
+        assertEquals(10, pattern.indexOf("ABABDABACDABABCABAB"), "Pattern should be found at index 10");
+        assertEquals(-1, pattern.indexOf("ABABDABACD"), "Pattern not present should return -1");
+    }
+
+    @Test
+    @DisplayName("Test indexOf with start offset")
+    public void testIndexOfFromIndex() {
+        CompiledPattern pattern = KMPAlgorithm.compile("ABA");
+        String text = "ABABABABAB";
+        assertEquals(0, pattern.indexOf(text, 0), "Should find first match");
+        assertEquals(2, pattern.indexOf(text, 1), "Should skip matches before fromIndex");
+        assertEquals(6, pattern.indexOf(text, 6), "Match starting at fromIndex should be found");
+        assertEquals(-1, pattern.indexOf(text, 8), "Remaining text shorter than pattern should return -1");
+        assertEquals(0, pattern.indexOf(text, -5), "Negative fromIndex should be treated as 0");
+    }
+
+    @Test
+    @DisplayName("Test empty compiled pattern")
+    public void testEmptyPattern() {
+        CompiledPattern pattern = KMPAlgorithm.compile("");
+        assertEquals(0, pattern.indexOf("HELLO"), "Empty pattern should match at index 0");
+        assertEquals(3, pattern.indexOf("HELLO", 3), "Empty pattern should match at fromIndex");
+        assertEquals(5, pattern.indexOf("HELLO", 10), "Empty pattern should match at most at text end");
+        assertArrayEquals(new int[0], pattern.findAll("HELLO"), "Empty pattern should report no occurrences");
+        assertEquals(0, KMPAlgorithm.compile(null).length(), "Null pattern should be treated as empty");
+    }
+
+    @Test
+    @DisplayName("Test findAll and count agree")
+    public void testFindAllAndCount() {
+        CompiledPattern pattern = KMPAlgorithm.compile("AA");
+        String text = "A".repeat(100);
+        int[] result = pattern.findAll(text);
+        assertEquals(99, result.length, "Overlapping occurrences should all be found");
+        assertEquals(98, result[98], "Last occurrence should be at index 98");
+        assertEquals(99, pattern.count(text), "count should match findAll length");
+        assertEquals(0, pattern.count(null), "Null text should have no occurrences");
+    }
+
+    @Test
+    @DisplayName("Test lps accessor returns a copy")
+    public void testLpsIsCopy() {
+        CompiledPattern pattern = KMPAlgorithm.compile("AAAAB");
+        int[] lps = pattern.lps();
+        assertArrayEquals(new int[]{0, 1, 2, 3, 0}, lps, "LPS array should be exposed");
+        lps[0] = 42;
+        assertEquals(35, pattern.indexOf("A".repeat(39) + "B"), "Modifying the copy should not affect the pattern");
+    }
+
+    @Test
+    @DisplayName("Test compiled pattern shared across threads")
+    public void testSharedAcrossThreads() throws Exception {
+        CompiledPattern pattern = KMPAlgorithm.compile("PATTERN");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                final int prefix = t * 100;
+                results.add(executor.submit(() -> pattern.indexOf("X".repeat(prefix) + "PATTERN")));
+            }
+            for (int t = 0; t < results.size(); t++) {
+                assertEquals(t * 100, results.get(t).get(), "Each thread should see its own match");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Test automaton engine matches lps engine")
+    public void testAutomatonMatchesLps() {
+        forRandomCases(42, 200, 500, 6, (text, patternText, random) -> {
+            CompiledPattern automaton = KMPAlgorithm.compile(patternText, Engine.AUTOMATON);
+            assertEquals(Engine.AUTOMATON, automaton.engine(), "Small ASCII pattern should use the automaton");
+            assertMatchesLps(automaton, text, 7);
+        });
+    }
+
+    @Test
+    @DisplayName("Test automaton worst case and non-latin text")
+    public void testAutomatonWorstCase() {
+        CompiledPattern pattern = KMPAlgorithm.compile("AAAAB", Engine.AUTOMATON);
+        assertEquals(35, pattern.indexOf("AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAB"), "Should handle worst case");
+        assertEquals(2, pattern.indexOf("A\u0410AAAAB"), "Chars outside the table should reset the state");
+    }
+
+    @Test
+    @DisplayName("Test automaton falls back to lps engine")
+    public void testAutomatonFallback() {
+        assertEquals(Engine.LPS, KMPAlgorithm.compile("ABC", Engine.AUTOMATON, 1024).engine(),
+                "Table above the memory cap should fall back to lps");
+        assertEquals(Engine.LPS, KMPAlgorithm.compile("\u0410\u0411", Engine.AUTOMATON).engine(),
+                "Chars outside the byte range should fall back to lps");
+        assertEquals(Engine.LPS, KMPAlgorithm.compile("ABC").engine(), "Default engine should be lps");
+        CompiledPattern fallback = KMPAlgorithm.compile("\u0410\u0411", Engine.AUTOMATON);
+        assertEquals(1, fallback.indexOf("X\u0410\u0411"), "Fallback engine should still match");
+    }
+
+    @Test
+    @DisplayName("Test findAll streams into a primitive sink")
+    public void testFindAllWithSink() {
+        CompiledPattern pattern = KMPAlgorithm.compile("ABA");
+        List<Integer> seen = new ArrayList<>();
+        int count = pattern.findAll("ABABABABAB", seen::add);
+        assertEquals(4, count, "Should return the number of matches");
+        assertEquals(List.of(0, 2, 4, 6), seen, "Sink should receive offsets in order");
+        assertEquals(4, KMPAlgorithm.count("ABABABABAB", "ABA"), "Static count should agree");
+        assertEquals(0, KMPAlgorithm.searchAll(null, "ABA", seen::add), "Null text should report nothing");
+    }
+
+    @Test
+    @DisplayName("Test match buffer is reusable")
+    public void testMatchBufferReuse() {
+        CompiledPattern pattern = KMPAlgorithm.compile("AB");
+        MatchBuffer buffer = new MatchBuffer(1);
+        pattern.findAll("ABABAB", buffer);
+        assertArrayEquals(new int[]{0, 2, 4}, buffer.toArray(), "Buffer should grow past its initial capacity");
+        buffer.clear();
+        assertTrue(buffer.isEmpty(), "Cleared buffer should be empty");
+        pattern.findAll("XXAB", buffer);
+        assertEquals(1, buffer.size(), "Buffer should only hold the latest matches");
+        assertEquals(2, buffer.get(0), "Offset should be recorded after reuse");
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.get(1), "Reading past size should fail");
+    }
+
+    @Test
+    @DisplayName("Test parallel findAll matches sequential result")
+    public void testParallelFindAll() {
+        Random random = new Random(7);
+        String text = randomString(random, 200_000, 2);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (String patternText : new String[]{"A", "ABAB", "AABBA", randomString(random, 12, 2)}) {
+                CompiledPattern pattern = KMPAlgorithm.compile(patternText);
+                int[] expected = pattern.findAll(text);
+                assertArrayEquals(expected, ParallelSearch.findAll(pattern, text, pool, 1000),
+                        "Segmented search should equal sequential search for " + patternText);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Test parallel findAll on small and empty inputs")
+    public void testParallelFindAllSmallInputs() {
+        CompiledPattern pattern = KMPAlgorithm.compile("ABA");
+        assertArrayEquals(new int[]{0, 2, 4, 6}, pattern.findAllParallel("ABABABABAB"),
+                "Text below threshold should fall back to sequential search");
+        assertArrayEquals(new int[0], pattern.findAllParallel(null), "Null text should have no matches");
+        String large = "AB".repeat(ParallelSearch.THRESHOLD);
+        assertEquals(ParallelSearch.THRESHOLD - 1, pattern.findAllParallel(large).length,
+                "Large text should be searched in parallel with the same result");
+    }
+
+    @Test
+    @DisplayName("Test segment search with prefilter stays inside its segment")
+    public void testSegmentPrefilterIsBounded() {
+        assertSegmentBounded(KMPAlgorithm.compile("AB", MatchOptions.DEFAULT.withPrefilter(true)));
+    }
+
+    @Test
+    @DisplayName("Test segment search with indexOf engine stays inside its segment")
+    public void testSegmentIndexOfIsBounded() {
+        assertSegmentBounded(KMPAlgorithm.compile("AB", Engine.INDEX_OF));
+    }
+
+    // "AB" occurs 250 times before index 1000 and 250 times after it, and the range end 1002
+    // falls inside the match at 1001, so any count other than 250 means the scan went past to
+    private static void assertSegmentBounded(CompiledPattern pattern) {
+        String text = "XABX".repeat(250) + "CAB" + "XAB".repeat(250);
+        List<Integer> offsets = new ArrayList<>();
+        assertEquals(250, pattern.findAll(text, 0, 1002, offsets::add), "Only matches inside the range should count");
+        assertEquals(997, offsets.get(offsets.size() - 1), "Last match should end before the range end");
+        assertEquals(251, pattern.findAll(text, 0, 1003, offset -> { }), "Match ending exactly at the range end should be found");
+        assertEquals(0, pattern.findAll(text, 998, 1002, offset -> fail("No match inside the range")),
+                "Range holding only the start of a match should find nothing");
+        assertEquals(1, pattern.findAll(text, 5, 7, offset -> assertEquals(5, offset, "Offsets should be absolute")),
+                "Short range inside the text should find its match");
+    }
+}
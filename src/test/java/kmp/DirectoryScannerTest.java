@@ -0,0 +1,196 @@
+package kmp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class DirectoryScannerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Test recursive scan reports path, line and column")
+    public void testScanTree() throws Exception {
+        Path a = write("a.log", "INFO ok\nERROR disk full, ERROR again\nINFO ok\n");
+        Path b = write("sub/deeper/b.log", "no match here\nstill none\nlast line ERROR");
+        write("sub/c.log", "nothing\n");
+
+        StringWriter out = new StringWriter();
+        DirectoryScanner.Summary summary = new DirectoryScanner("ERROR", 2).scan(dir, out);
+        assertEquals(List.of(a + ":2:1:ERROR disk full, ERROR again", b + ":3:11:last line ERROR"), sortedLines(out),
+                "Each matching line should be printed once with its first match column");
+        assertEquals(3, summary.files(), "All text files should be searched");
+        assertEquals(2, summary.matchingLines(), "Matching lines should be counted once");
+        assertTrue(summary.errors().isEmpty(), "No errors expected");
+    }
+
+    @Test
+    @DisplayName("Test UTF-8 pattern and byte columns")
+    public void testUtf8() throws Exception {
+        Path file = write("utf8.txt", "naïve café\ncafé\n");
+        StringWriter out = new StringWriter();
+        new DirectoryScanner("café", 1).scan(file, out);
+        assertEquals(List.of(file + ":1:8:naïve café", file + ":2:1:café"), sortedLines(out),
+                "Columns should count bytes and lines should be decoded as UTF-8");
+    }
+
+    @Test
+    @DisplayName("Test binary files are skipped")
+    public void testBinarySkip() throws Exception {
+        Path binary = dir.resolve("image.bin");
+        Files.write(binary, new byte[]{'E', 'R', 'R', 'O', 'R', 0, '\n'});
+        write("text.log", "ERROR\n");
+        StringWriter out = new StringWriter();
+        DirectoryScanner.Summary summary = new DirectoryScanner("ERROR", 2).scan(dir, out);
+        assertEquals(1, summary.binaryFiles(), "File with a NUL byte should be treated as binary");
+        assertEquals(1, summary.files(), "Only the text file should be searched");
+        assertEquals(1, sortedLines(out).size(), "Binary file should not be reported");
+    }
+
+    @Test
+    @DisplayName("Test line numbers across read chunks and mapped windows")
+    public void testChunkBoundaries() throws Exception {
+        StringBuilder text = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        Path file = dir.resolve("large.log");
+        int line = 1;
+        // lines of varying length so matches land on both sides of every chunk and window boundary
+        while (text.length() < 2 * DirectoryScanner.READ_CHUNK + 5000) {
+            String content = line % 97 == 0 ? "x".repeat(line % 13) + "NEEDLE" + "y".repeat(line % 200) : "z".repeat(line % 150);
+            if (content.contains("NEEDLE")) {
+                expected.add(file + ":" + line + ":" + (line % 13 + 1) + ":" + content);
+            }
+            text.append(content).append('\n');
+            line++;
+        }
+        Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+
+        StringWriter streamed = new StringWriter();
+        new DirectoryScanner("NEEDLE", 1).scan(file, streamed);
+        assertEquals(expected, lines(streamed), "Streamed reads should keep line numbers across chunks");
+
+        StringWriter mapped = new StringWriter();
+        new DirectoryScanner("NEEDLE", 1, 0, 4096).scan(file, mapped);
+        assertEquals(expected, lines(mapped), "Mapped windows should keep line numbers across windows");
+    }
+
+    @Test
+    @DisplayName("Test lines longer than a read chunk or mapped window")
+    public void testLongLines() throws Exception {
+        int chunk = DirectoryScanner.READ_CHUNK;
+        Path streamedFile = write("streamed.log", longLines(chunk));
+        StringWriter streamed = new StringWriter();
+        new DirectoryScanner("NEEDLE", 1).scan(streamedFile, streamed);
+        assertLongLines(streamedFile, chunk, lines(streamed));
+
+        int window = 4096;
+        Path mappedFile = write("mapped.log", longLines(window));
+        StringWriter mapped = new StringWriter();
+        new DirectoryScanner("NEEDLE", 1, 0, window).scan(mappedFile, mapped);
+        assertLongLines(mappedFile, window, lines(mapped));
+    }
+
+    // line 1 has a match across the first cut and more in later pieces, line 2 only matches
+    // two pieces in, and lines 3 and 4 are short
+    private static String longLines(int piece) {
+        return "x".repeat(piece - 3) + "NEEDLE" + "y".repeat(piece) + "NEEDLE" + "y".repeat(piece) + "\n"
+                + "z".repeat(2 * piece + 100) + "NEEDLE\n"
+                + "none\n"
+                + "last NEEDLE";
+    }
+
+    private static void assertLongLines(Path file, int piece, List<String> lines) {
+        assertEquals(3, lines.size(), "Each long line should be reported once: " + lines.size());
+        assertTrue(lines.get(0).startsWith(file + ":1:" + (piece - 2) + ":"),
+                "Match across the cut should be found with its column in the line");
+        assertTrue(lines.get(1).startsWith(file + ":2:" + (2 * piece + 101) + ":"),
+                "Column should count from the start of a split line");
+        assertTrue(lines.get(1).endsWith("zNEEDLE"), "The piece holding the match should be printed");
+        assertEquals(file + ":4:6:last NEEDLE", lines.get(2), "Lines after long lines should keep their numbers");
+    }
+
+    @Test
+    @DisplayName("Test empty pattern, errors and invalid settings")
+    public void testEdgeCases() throws Exception {
+        Path file = write("two.txt", "first\nsecond\n");
+        StringWriter out = new StringWriter();
+        assertEquals(2, new DirectoryScanner("", 1).scan(file, out).matchingLines(), "Empty pattern should match every line");
+
+        DirectoryScanner.Summary missing = new DirectoryScanner("x", 1).scan(dir.resolve("missing"), new StringWriter());
+        assertEquals(1, missing.errors().size(), "Unreadable root should be reported, not thrown");
+
+        assertThrows(IllegalArgumentException.class, () -> new DirectoryScanner("a\nb", 1),
+                "Pattern spanning lines should be rejected");
+        assertThrows(IllegalArgumentException.class, () -> new DirectoryScanner("a", 0),
+                "At least one worker is required");
+    }
+
+    @Test
+    @DisplayName("Test a failing output writer stops the scan instead of hanging")
+    public void testWriterFailure() throws Exception {
+        // more matching output than the writer buffers and more files than the queues hold,
+        // so a dead writer would block the worker and the walk
+        for (int i = 0; i < 300; i++) {
+            write("many/" + i + ".log", "ERROR " + "x".repeat(1000) + "\n");
+        }
+        IllegalStateException runtime = new IllegalStateException("sink broke");
+        AssertionError error = new AssertionError("sink died");
+        for (Throwable failure : new Throwable[]{runtime, error}) {
+            Writer failing = new Writer() {
+                @Override
+                public void write(char[] chars, int offset, int length) {
+                    if (failure instanceof Error) {
+                        throw (Error) failure;
+                    }
+                    throw (RuntimeException) failure;
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+            Throwable thrown = assertTimeoutPreemptively(Duration.ofSeconds(60),
+                    () -> assertThrows(Throwable.class, () -> new DirectoryScanner("ERROR", 1).scan(dir, failing)),
+                    "Scan should end after the writer fails");
+            assertSame(failure, thrown, "The writer's failure should be rethrown by scan");
+        }
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path file = dir.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<String> sortedLines(StringWriter out) {
+        String text = out.toString();
+        assertTrue(text.isEmpty() || text.endsWith("\n"), "Output should end with a line break");
+        List<String> lines = new ArrayList<>(text.isEmpty() ? List.of() : Arrays.asList(text.split("\n")));
+        lines.sort(null);
+        return lines;
+    }
+
+    // the lines of a single file come out in file order
+    private static List<String> lines(StringWriter out) {
+        return Arrays.asList(out.toString().split("\n"));
+    }
+}
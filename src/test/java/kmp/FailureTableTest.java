@@ -0,0 +1,96 @@
+package kmp;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static kmp.TestStrings.assertMatchesLps;
+import static kmp.TestStrings.forRandomCases;
+import static kmp.TestStrings.randomString;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class FailureTableTest {
+    @Test
+    @DisplayName("Test narrowest width is picked from the largest lps value")
+    public void testWidth() {
+        assertEquals(1, widthOf("A".repeat(256)), "Lps values up to 255 should use bytes");
+        assertEquals(2, widthOf("A".repeat(257)), "Lps value 256 should use shorts");
+        assertEquals(1, widthOf("AB".repeat(100) + "C".repeat(1000)), "Long pattern with short borders should use bytes");
+        assertEquals(2, widthOf("A".repeat(65536)), "Lps values up to 65535 should use shorts");
+        assertEquals(4, widthOf("A".repeat(65537)), "Larger lps values should use ints");
+    }
+
+    @Test
+    @DisplayName("Test every width round-trips the lps values")
+    public void testRoundTrip() {
+        for (String pattern : new String[]{"AABAACAABAA", "A".repeat(300) + "B", "A".repeat(70_000)}) {
+            int[] expected = KMPAlgorithm.computeLPSArray(pattern);
+            assertArrayEquals(expected, new FailureTable(expected, false).toArray(), "Heap table should keep values");
+            assertArrayEquals(expected, new FailureTable(expected, true).toArray(), "Direct table should keep values");
+            assertArrayEquals(expected, KMPAlgorithm.compile(pattern).lps(), "Compiled pattern should expose int values");
+        }
+    }
+
+    @Test
+    @DisplayName("Test table built in place equals the int lps array")
+    public void testBuildInPlace() {
+        Random random = new Random(180);
+        String[] patterns = {"A", "AABAACAABAA", "AB".repeat(100) + "C".repeat(1000), "A".repeat(300) + "B",
+                "A".repeat(70_000), randomString(random, 5000, 2)};
+        for (String pattern : patterns) {
+            int[] expected = KMPAlgorithm.computeLPSArray(pattern);
+            for (boolean offHeap : new boolean[]{false, true}) {
+                FailureTable table = FailureTable.of(pattern.toCharArray(), offHeap);
+                assertArrayEquals(expected, table.toArray(), "Built table should hold the lps values, offHeap=" + offHeap);
+                assertEquals(new FailureTable(expected, offHeap).width(), table.width(),
+                        "Built table should be narrowed to the largest value");
+                assertEquals(offHeap, table.isDirect(), "Built table should honour offHeap");
+            }
+        }
+        assertSame(FailureTable.EMPTY, FailureTable.of(new char[0], false), "Empty pattern should share the empty table");
+    }
+
+    @Test
+    @DisplayName("Test follow walks the same chain on every width")
+    public void testFollow() {
+        Random random = new Random(181);
+        for (String pattern : new String[]{"AABAACAABAA", "A".repeat(300) + "B", "A".repeat(70_000) + "B"}) {
+            char[] chars = pattern.toCharArray();
+            int[] lps = KMPAlgorithm.computeLPSArray(pattern);
+            FailureTable heap = FailureTable.of(chars, false);
+            FailureTable direct = FailureTable.of(chars, true);
+            for (int round = 0; round < 1000; round++) {
+                int j = random.nextInt(chars.length);
+                char c = (char) ('A' + random.nextInt(3));
+                int expected = j;
+                while (expected > 0 && chars[expected] != c) {
+                    expected = lps[expected - 1];
+                }
+                assertEquals(expected, heap.follow(chars, j, c), "Heap table should stop at the same state");
+                assertEquals(expected, direct.follow(chars, j, c), "Direct table should stop at the same state");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test off-heap table matches the heap table")
+    public void testOffHeap() {
+        MatchOptions offHeap = MatchOptions.DEFAULT.withOffHeap(true);
+        CompiledPattern direct = KMPAlgorithm.compile("A".repeat(300) + "B", offHeap);
+        assertTrue(direct.failureTable().isDirect(), "Off-heap option should use a direct buffer");
+        assertEquals(2, direct.failureTable().width(), "Direct table should also use the narrowest width");
+        assertEquals(301 * 2, direct.tableBytes(), "Table size should reflect the width");
+
+        forRandomCases(18, 100, 2000, 8, (text, pattern, random) ->
+                assertMatchesLps(KMPAlgorithm.compile(pattern, offHeap.withEngine(Engine.LPS)), text, 0));
+        String text = "A".repeat(70_000) + "B";
+        String pattern = "A".repeat(66_000) + "B";
+        assertEquals(4000, KMPAlgorithm.compile(pattern, offHeap).indexOf(text), "Int-width direct table should match");
+    }
+
+    private static int widthOf(String pattern) {
+        return KMPAlgorithm.compile(pattern).failureTable().width();
+    }
+}
@@ -2,6 +2,8 @@ package kmp;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import java.nio.ByteBuffer;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 
@@ -342,4 +344,63 @@ public class KMPAlgorithmTest {
         int result = KMPAlgorithm.search(text, pattern);
         assertEquals(-1, result, "Both null should return -1");
     }
-}
\ No newline at end of file
+
+    // other text types
+
+    @Test
+    @DisplayName("Test char array range search")
+    public void testCharArraySearch() {
+        char[] text = "xxABABDABACDABABCABABxx".toCharArray();
+        assertEquals(12, KMPAlgorithm.search(text, 2, 19, "ABABCABAB"), "Index should be into the array");
+        assertEquals(-1, KMPAlgorithm.search(text, 2, 18, "ABABCABAB"), "Match past the range should not count");
+        assertArrayEquals(new int[]{2, 4}, KMPAlgorithm.searchAll("xxABABAxx".toCharArray(), 2, 5, "ABA"),
+                "Should find all occurrences within the range");
+        assertThrows(IndexOutOfBoundsException.class, () -> KMPAlgorithm.search(text, 20, 10, "A"),
+                "Range outside the array should be rejected");
+    }
+
+    @Test
+    @DisplayName("Test CharSequence search")
+    public void testCharSequenceSearch() {
+        StringBuilder text = new StringBuilder("HELLO WORLD WORLD");
+        assertEquals(6, KMPAlgorithm.search(text, "WORLD"), "Should search a StringBuilder directly");
+        assertArrayEquals(new int[]{6, 12}, KMPAlgorithm.searchAll(text, "WORLD"), "Should find all occurrences");
+        assertEquals(-1, KMPAlgorithm.search((CharSequence) null, "WORLD"), "Null text should return -1");
+    }
+
+    @Test
+    @DisplayName("Test byte array and buffer search")
+    public void testByteSearch() {
+        byte[] text = {0, 1, 2, 3, 1, 2, 3, (byte) 0xFF, 1, 2};
+        byte[] pattern = {1, 2, 3};
+        assertEquals(1, KMPAlgorithm.search(text, 0, text.length, pattern), "Should find first byte match");
+        assertArrayEquals(new int[]{1, 4}, KMPAlgorithm.searchAll(text, 0, text.length, pattern),
+                "Should find all byte matches");
+        assertEquals(7, KMPAlgorithm.search(text, 0, text.length, new byte[]{(byte) 0xFF, 1}),
+                "Negative bytes should match as unsigned values");
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(text.length).put(text);
+        direct.position(2).limit(text.length);
+        assertEquals(4, KMPAlgorithm.search(direct, pattern), "Direct buffer index should be absolute");
+        assertEquals(2, direct.position(), "Search should not move the buffer position");
+
+        ByteBuffer slice = ByteBuffer.wrap(text, 3, 7).slice();
+        assertArrayEquals(new int[]{1}, KMPAlgorithm.searchAll(slice, pattern), "Sliced heap buffer index should be relative to the slice");
+    }
+
+    @Test
+    @DisplayName("Test LPS array for other pattern types")
+    public void testLPSArrayOverloads() {
+        int[] expected = {0, 0, 1, 2, 0, 1, 2, 3, 4};
+        assertArrayEquals(expected, KMPAlgorithm.computeLPSArray("xABABCABABx".toCharArray(), 1, 9), "char[] range");
+        assertArrayEquals(expected, KMPAlgorithm.computeLPSArray(new StringBuilder("ABABCABAB")), "CharSequence");
+        assertArrayEquals(expected, KMPAlgorithm.computeLPSArray("ABABCABAB".getBytes(), 0, 9), "byte[] range");
+        ByteBuffer direct = ByteBuffer.allocateDirect(11).put("xABABCABABx".getBytes());
+        direct.position(1).limit(10);
+        assertArrayEquals(expected, KMPAlgorithm.computeLPSArray(direct), "direct ByteBuffer");
+        assertEquals(1, direct.position(), "Computing the table should not move the buffer position");
+        assertArrayEquals(expected, KMPAlgorithm.computeLPSArray(ByteBuffer.wrap("xABABCABABx".getBytes(), 1, 9).slice()),
+                "heap ByteBuffer slice");
+        assertArrayEquals(new int[0], KMPAlgorithm.computeLPSArray(new char[0], 0, 0), "Empty range should give empty table");
+    }
+}
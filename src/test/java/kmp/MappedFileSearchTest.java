@@ -0,0 +1,66 @@
+package kmp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class MappedFileSearchTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Test search in memory-mapped file")
+    public void testSearchFile() throws IOException {
+        Path file = write("log.txt", "INFO ok\nERROR disk full\nINFO ok\nERROR again\n");
+        assertEquals(8, KMPAlgorithm.searchFile(file, "ERROR"), "First match should be a byte offset");
+        assertArrayEquals(new long[]{8, 32}, KMPAlgorithm.searchAllFile(file, "ERROR"), "Should find all matches");
+        assertEquals(-1, KMPAlgorithm.searchFile(file, "WARN"), "Missing pattern should return -1");
+    }
+
+    @Test
+    @DisplayName("Test UTF-8 pattern in file")
+    public void testUtf8Pattern() throws IOException {
+        Path file = write("utf8.txt", "naïve café, café");
+        assertArrayEquals(new long[]{7, 14}, KMPAlgorithm.searchAllFile(file, "café"), "Offsets should count bytes");
+    }
+
+    @Test
+    @DisplayName("Test empty file and empty pattern")
+    public void testEmptyInputs() throws IOException {
+        Path empty = write("empty.txt", "");
+        assertEquals(-1, KMPAlgorithm.searchFile(empty, "A"), "Empty file should not match");
+        assertEquals(0, KMPAlgorithm.searchAllFile(empty, "A").length, "Empty file should have no matches");
+        assertEquals(0, KMPAlgorithm.searchFile(empty, ""), "Empty pattern should match at 0");
+    }
+
+    @Test
+    @DisplayName("Test matches across mapped windows")
+    public void testMatchesAcrossWindows() throws IOException {
+        String text = "ABCABDABCABD".repeat(10);
+        Path file = write("windows.txt", text);
+        CompiledPattern pattern = KMPAlgorithm.compile("CABDA");
+
+        List<Long> matches = new ArrayList<>();
+        long count = MappedFileSearch.findAll(file, pattern, matches::add, 5);
+        int[] expected = pattern.findAll(text);
+        assertEquals(expected.length, count, "Window size should not change the match count");
+        for (int k = 0; k < expected.length; k++) {
+            assertEquals(expected[k], matches.get(k).longValue(), "Offsets should match in-memory search");
+        }
+        assertEquals(expected[0], MappedFileSearch.indexOf(file, pattern, 3), "First match should span windows");
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,91 @@
+package kmp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class MatchOptionsTest {
+    private static final MatchOptions ASCII = MatchOptions.DEFAULT.withCaseFolding(CaseFolding.ASCII);
+    private static final MatchOptions UNICODE = MatchOptions.DEFAULT.withCaseFolding(CaseFolding.UNICODE);
+
+    @Test
+    @DisplayName("Test ASCII case-insensitive match")
+    public void testAsciiFolding() {
+        CompiledPattern pattern = KMPAlgorithm.compile("world", ASCII);
+        assertEquals(6, pattern.indexOf("Hello World"), "Should match regardless of case");
+        assertArrayEquals(new int[]{0, 6}, pattern.findAll("WORLD world"), "Should find both spellings");
+        assertEquals(-1, KMPAlgorithm.compile("STRASSE", ASCII).indexOf("straße"),
+                "ASCII folding should not expand non-ASCII chars");
+        assertEquals(-1, KMPAlgorithm.compile("é", ASCII).indexOf("É"), "Non-ASCII letters should stay case-sensitive");
+    }
+
+    @Test
+    @DisplayName("Test ASCII folding with automaton engine")
+    public void testAsciiFoldingAutomaton() {
+        CompiledPattern pattern = KMPAlgorithm.compile("AaBb", ASCII.withEngine(Engine.AUTOMATON));
+        assertEquals(Engine.AUTOMATON, pattern.engine(), "ASCII folding should keep the automaton");
+        assertArrayEquals(new int[]{1, 6}, pattern.findAll("xAABBxaabbx"), "Folding should be baked into the table");
+        assertEquals(3, pattern.count("aAbBAaBbaabb"), "Automaton and folding should handle overlapping states");
+    }
+
+    @Test
+    @DisplayName("Test Unicode simple case folding")
+    public void testUnicodeFolding() {
+        assertEquals(3, KMPAlgorithm.compile("ÉTÉ", UNICODE).indexOf("Un été"), "Accented letters should fold");
+        assertEquals(0, KMPAlgorithm.compile("ΣΟΦΙΑ", UNICODE).indexOf("σοφια"), "Greek letters should fold");
+        assertEquals(Engine.LPS, KMPAlgorithm.compile("abc", UNICODE.withEngine(Engine.AUTOMATON)).engine(),
+                "Unicode folding should use the lps engine");
+    }
+
+    @Test
+    @DisplayName("Test folding does not change the text")
+    public void testTextNotModified() {
+        CompiledPattern pattern = KMPAlgorithm.compile("Pattern", ASCII);
+        StringBuilder text = new StringBuilder("a PATTERN here");
+        assertEquals(2, pattern.indexOf(text), "CharSequence search should fold on the fly");
+        assertEquals("a PATTERN here", text.toString(), "Text should be left untouched");
+        assertEquals("Pattern", pattern.pattern(), "Original pattern should be reported");
+    }
+
+    @Test
+    @DisplayName("Test code-point mode never splits surrogate pairs")
+    public void testCodePointsDoNotSplitPairs() {
+        String gClef = "𝄞";
+        String text = "a" + gClef + "b";
+        String lowHalf = "\uDD1Eb";
+        assertEquals(2, KMPAlgorithm.compile(lowHalf).indexOf(text), "Char mode may match half a pair");
+        CompiledPattern pattern = KMPAlgorithm.compile(lowHalf, MatchOptions.DEFAULT.withCodePoints(true));
+        assertEquals(-1, pattern.indexOf(text), "Code-point mode should not start inside a pair");
+        assertEquals(-1, KMPAlgorithm.compile("a\uD834", MatchOptions.DEFAULT.withCodePoints(true)).indexOf(text),
+                "Code-point mode should not end inside a pair");
+        assertEquals(1, KMPAlgorithm.compile(gClef, MatchOptions.DEFAULT.withCodePoints(true)).indexOf(text),
+                "Whole pairs should match");
+    }
+
+    @Test
+    @DisplayName("Test code-point mode folds supplementary letters")
+    public void testSupplementaryFolding() {
+        String upper = new String(Character.toChars(0x10400));
+        String lower = new String(Character.toChars(0x10428));
+        MatchOptions options = UNICODE.withCodePoints(true);
+        assertEquals(1, KMPAlgorithm.compile(upper, options).indexOf("x" + lower), "Deseret letters should fold");
+        assertArrayEquals(new int[]{0, 2}, KMPAlgorithm.compile(lower, options).findAll(upper + lower),
+                "Offsets should stay in chars");
+        assertEquals(-1, KMPAlgorithm.compile(upper, UNICODE).indexOf(lower), "Char mode should not fold pairs");
+    }
+
+    @Test
+    @DisplayName("Test options are immutable values")
+    public void testOptionsValues() {
+        MatchOptions options = MatchOptions.DEFAULT.withCaseFolding(CaseFolding.ASCII);
+        assertEquals(CaseFolding.NONE, MatchOptions.DEFAULT.caseFolding(), "Default should be unchanged");
+        assertEquals(options, MatchOptions.DEFAULT.withCaseFolding(CaseFolding.ASCII), "Equal options should be equal");
+        StreamMatcher matcher = KMPAlgorithm.compile("a", MatchOptions.DEFAULT.withCodePoints(true)).matcher();
+        assertEquals(0, matcher.feed(new char[]{'a'}, 0, 1, offset -> fail("Last char should wait for the next one")),
+                "Code-point mode should hold back the last char");
+        assertEquals(1, matcher.finish(offset -> assertEquals(0, offset, "Match should start at 0")),
+                "finish should match the held back char");
+    }
+}
@@ -0,0 +1,153 @@
+package kmp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Spliterator;
+
+import static kmp.TestStrings.randomString;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class MatchSpliteratorTest {
+    @Test
+    @DisplayName("Test iterator yields the findAll offsets lazily")
+    public void testIterator() {
+        CompiledPattern pattern = KMPAlgorithm.compile("ABA");
+        PrimitiveIterator.OfInt matches = pattern.matchIterator("ABABABABAB");
+        List<Integer> seen = new ArrayList<>();
+        while (matches.hasNext()) {
+            seen.add(matches.nextInt());
+        }
+        assertEquals(List.of(0, 2, 4, 6), seen, "Iterator should return overlapping matches in order");
+        assertThrows(NoSuchElementException.class, matches::nextInt, "Exhausted iterator should throw");
+        assertFalse(KMPAlgorithm.compile("").matchIterator("ABC").hasNext(), "Empty pattern should have no matches");
+        assertFalse(pattern.matchIterator(null).hasNext(), "Null text should have no matches");
+    }
+
+    @Test
+    @DisplayName("Test stream stops scanning once enough matches are taken")
+    public void testShortCircuit() {
+        CompiledPattern pattern = KMPAlgorithm.compile("AB");
+        StringBuilder text = new StringBuilder("ABXAB");
+        // a text that fails on any read past the first matches
+        CharSequence guarded = new CharSequence() {
+            public int length() {
+                return 1_000_000;
+            }
+
+            public char charAt(int index) {
+                if (index >= text.length()) {
+                    fail("Text read past index " + index);
+                }
+                return text.charAt(index);
+            }
+
+            public CharSequence subSequence(int start, int end) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        assertArrayEquals(new int[]{0, 3}, pattern.matches(guarded).limit(2).toArray(),
+                "limit should not scan past the last match it needs");
+        assertEquals(3, pattern.matches(guarded).filter(offset -> offset > 0).findFirst().getAsInt(),
+                "findFirst should stop at the first accepted match");
+    }
+
+    @Test
+    @DisplayName("Test parallel stream equals sequential findAll")
+    public void testParallelStream() {
+        Random random = new Random(24);
+        String text = randomString(random, 600_000, 2);
+        for (String patternText : new String[]{"A", "ABAB", "AABBA", randomString(random, 12, 2)}) {
+            CompiledPattern pattern = KMPAlgorithm.compile(patternText);
+            assertArrayEquals(pattern.findAll(text), pattern.matches(text).parallel().toArray(),
+                    "Parallel stream should equal findAll for " + patternText);
+            assertEquals(pattern.count(text), pattern.matches(text).parallel().count(),
+                    "Parallel count should agree for " + patternText);
+        }
+    }
+
+    @Test
+    @DisplayName("Test matches across split points are reported once")
+    public void testSplitBoundaries() {
+        CompiledPattern pattern = KMPAlgorithm.compile("AAAB");
+        String text = "AAAB".repeat(50) + "AAAAAAAB";
+        int[] expected = pattern.findAll(text);
+        for (int minSplit = 1; minSplit <= 9; minSplit++) {
+            List<Spliterator.OfInt> parts = new ArrayList<>();
+            split(new MatchSpliterator(pattern, text, minSplit), parts);
+            assertTrue(parts.size() > 1, "Text should be split for minSplit " + minSplit);
+            MatchBuffer actual = new MatchBuffer();
+            for (Spliterator.OfInt part : parts) {
+                part.forEachRemaining((int offset) -> actual.onMatch(offset));
+            }
+            assertArrayEquals(expected, actual.toArray(), "Concatenated parts should equal findAll for minSplit " + minSplit);
+        }
+    }
+
+    @Test
+    @DisplayName("Test split after partial traversal keeps the remaining matches")
+    public void testSplitAfterAdvance() {
+        CompiledPattern pattern = KMPAlgorithm.compile("ABA");
+        String text = "ABA".repeat(40);
+        Spliterator.OfInt spliterator = new MatchSpliterator(pattern, text, 4);
+        MatchBuffer actual = new MatchBuffer();
+        assertTrue(spliterator.tryAdvance((int offset) -> actual.onMatch(offset)), "First match should be found");
+        Spliterator.OfInt prefix = spliterator.trySplit();
+        assertNotNull(prefix, "Remaining range should still split");
+        prefix.forEachRemaining((int offset) -> actual.onMatch(offset));
+        spliterator.forEachRemaining((int offset) -> actual.onMatch(offset));
+        assertArrayEquals(pattern.findAll(text), actual.toArray(), "No match should be lost or repeated");
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED | Spliterator.IMMUTABLE),
+                "String matches should be sorted and immutable");
+    }
+
+    @Test
+    @DisplayName("Test code-point mode with split points inside surrogate pairs")
+    public void testCodePoints() {
+        // U+10400 folds to U+10428, and a lone high surrogate stays a char of its own
+        String[] pieces = {"a", "A", "\uD801\uDC00", "\uD801\uDC28", "\uD801"};
+        Random random = new Random(30);
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 400) {
+            sb.append(pieces[random.nextInt(pieces.length)]);
+        }
+        String text = sb.toString();
+        MatchOptions options = MatchOptions.DEFAULT.withCodePoints(true).withCaseFolding(CaseFolding.UNICODE);
+        for (String patternText : new String[]{"a\uD801\uDC28", "\uD801\uDC00\uD801\uDC00", "\uDC00", "\uD801"}) {
+            CompiledPattern pattern = KMPAlgorithm.compile(patternText, options);
+            int[] expected = pattern.findAll(text);
+            PrimitiveIterator.OfInt iterator = pattern.matchIterator(text);
+            MatchBuffer iterated = new MatchBuffer();
+            while (iterator.hasNext()) {
+                iterated.onMatch(iterator.nextInt());
+            }
+            assertArrayEquals(expected, iterated.toArray(), patternText + " iterator should equal findAll");
+            // odd minSplit values put split points on both halves of the pairs
+            for (int minSplit = 1; minSplit <= 5; minSplit++) {
+                List<Spliterator.OfInt> parts = new ArrayList<>();
+                split(new MatchSpliterator(pattern, text, minSplit), parts);
+                MatchBuffer actual = new MatchBuffer();
+                for (Spliterator.OfInt part : parts) {
+                    part.forEachRemaining((int offset) -> actual.onMatch(offset));
+                }
+                assertArrayEquals(expected, actual.toArray(), patternText + " parts should equal findAll for minSplit " + minSplit);
+            }
+        }
+    }
+
+    private static void split(Spliterator.OfInt spliterator, List<Spliterator.OfInt> parts) {
+        Spliterator.OfInt prefix = spliterator.trySplit();
+        if (prefix == null) {
+            parts.add(spliterator);
+            return;
+        }
+        split(prefix, parts);
+        split(spliterator, parts);
+    }
+}
@@ -0,0 +1,68 @@
+package kmp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static kmp.TestStrings.randomString;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class MultiPatternMatcherTest {
+    @Test
+    @DisplayName("Test classic he/she/his/hers example")
+    public void testClassicExample() {
+        MultiPatternMatcher matcher = KMPAlgorithm.compileAll(List.of("he", "she", "his", "hers"));
+        List<String> matches = new ArrayList<>();
+        int count = matcher.findAll("ushers", (id, offset) -> matches.add(matcher.pattern(id) + "@" + offset));
+        assertEquals(3, count, "Should find she, he and hers");
+        assertEquals(List.of("she@1", "he@2", "hers@2"), matches, "Matches should be reported by end position");
+    }
+
+    @Test
+    @DisplayName("Test duplicate, nested and empty patterns")
+    public void testDuplicateAndEmptyPatterns() {
+        MultiPatternMatcher matcher = KMPAlgorithm.compileAll(Arrays.asList("AA", "A", "", "AA", null));
+        List<String> matches = new ArrayList<>();
+        matcher.findAll("AAA", (id, offset) -> matches.add(id + "@" + offset));
+        assertEquals(List.of("1@0", "0@0", "3@0", "1@1", "0@1", "3@1", "1@2"), matches,
+                "Duplicates should each be reported and empty patterns never match");
+        assertEquals(5, matcher.patternCount(), "Pattern ids should follow input order");
+        assertEquals(0, matcher.count(null), "Null text should have no matches");
+    }
+
+    @Test
+    @DisplayName("Test agreement with single-pattern search")
+    public void testAgreesWithSearchAll() {
+        Random random = new Random(11);
+        List<String> patterns = new ArrayList<>();
+        for (int k = 0; k < 50; k++) {
+            patterns.add(randomString(random, 1 + random.nextInt(5), 3));
+        }
+        String text = randomString(random, 5000, 3);
+        MultiPatternMatcher matcher = MultiPatternMatcher.compile(patterns);
+
+        List<List<Integer>> found = new ArrayList<>();
+        for (int k = 0; k < patterns.size(); k++) {
+            found.add(new ArrayList<>());
+        }
+        matcher.findAll(text, (id, offset) -> found.get(id).add(offset));
+
+        for (int k = 0; k < patterns.size(); k++) {
+            int[] expected = KMPAlgorithm.searchAll(text, patterns.get(k));
+            int[] actual = found.get(k).stream().mapToInt(Integer::intValue).toArray();
+            assertArrayEquals(expected, actual, "Should match searchAll for " + patterns.get(k));
+        }
+    }
+
+    @Test
+    @DisplayName("Test trie shares common prefixes")
+    public void testNodeCount() {
+        MultiPatternMatcher matcher = MultiPatternMatcher.compile(List.of("ABC", "ABD", "AB"));
+        assertEquals(5, matcher.nodeCount(), "Root, A, AB, ABC and ABD should be the only nodes");
+    }
+}
@@ -0,0 +1,139 @@
+package kmp;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static kmp.TestStrings.randomString;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class PatternBuilderTest {
+    @Test
+    @DisplayName("Test incremental lps matches computeLPSArray")
+    public void testIncrementalLps() {
+        Random random = new Random(20);
+        for (int round = 0; round < 200; round++) {
+            PatternBuilder builder = new PatternBuilder(1);
+            StringBuilder expected = new StringBuilder();
+            for (int k = 0; k < 40; k++) {
+                char c = (char) ('A' + random.nextInt(2));
+                builder.append(c);
+                expected.append(c);
+                assertArrayEquals(KMPAlgorithm.computeLPSArray(expected.toString()), builder.lps(),
+                        "Lps should be extended correctly for " + expected);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test truncation keeps the lps prefix")
+    public void testTruncation() {
+        PatternBuilder builder = new PatternBuilder().append("AABAACAABAA");
+        builder.deleteLast().setLength(6);
+        assertEquals("AABAAC", builder.toString(), "Pattern should be truncated");
+        assertArrayEquals(new int[]{0, 1, 0, 1, 2, 0}, builder.lps(), "Remaining lps entries should be kept");
+        builder.append('A');
+        assertArrayEquals(KMPAlgorithm.computeLPSArray("AABAACA"), builder.lps(), "Append after truncation should work");
+        assertEquals(1, builder.compile().indexOf("XAABAACA"), "Compiled snapshot should match");
+        assertThrows(IndexOutOfBoundsException.class, () -> builder.setLength(8), "Growing via setLength should fail");
+        assertThrows(IllegalStateException.class, () -> new PatternBuilder().deleteLast(), "Empty pattern cannot shrink");
+    }
+
+    @Test
+    @DisplayName("Test compile reuses the maintained table under every option")
+    public void testCompileSnapshot() {
+        Random random = new Random(21);
+        MatchOptions[] options = {MatchOptions.DEFAULT, MatchOptions.DEFAULT.withOffHeap(true),
+                MatchOptions.DEFAULT.withEngine(Engine.AUTOMATON), MatchOptions.DEFAULT.withCodePoints(true),
+                MatchOptions.DEFAULT.withCaseFolding(CaseFolding.ASCII)};
+        PatternBuilder builder = new PatternBuilder(1);
+        String text = randomString(random, 2000, 3).toLowerCase() + randomString(random, 2000, 3);
+        for (int step = 0; step < 300; step++) {
+            // mostly appends, with truncations that leave stale entries past the length
+            if (builder.length() > 0 && random.nextInt(4) == 0) {
+                builder.setLength(random.nextInt(builder.length()));
+            } else {
+                builder.append((char) ('A' + random.nextInt(3)));
+            }
+            for (MatchOptions option : options) {
+                CompiledPattern snapshot = builder.compile(option);
+                CompiledPattern fresh = KMPAlgorithm.compile(builder.toString(), option);
+                FailureTable expected = fresh.failureTable();
+                FailureTable actual = snapshot.failureTable();
+                assertEquals(expected.width(), actual.width(), "Table should use the narrowest width for " + builder);
+                for (int k = 0; k < builder.length(); k++) {
+                    assertEquals(expected.get(k), actual.get(k), "Table entry " + k + " should agree for " + builder);
+                }
+                assertEquals(fresh.engine(), snapshot.engine(), "Engine choice should agree for " + builder);
+                assertArrayEquals(fresh.findAll(text), snapshot.findAll(text), "Matches should agree for " + builder);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test type-ahead refinement matches a full search")
+    public void testTypeAhead() {
+        Random random = new Random(21);
+        for (int round = 0; round < 100; round++) {
+            String text = randomString(random, 1000, 2);
+            TypeAheadSearch search = new TypeAheadSearch(text);
+            StringBuilder typed = new StringBuilder();
+            for (int step = 0; step < 12; step++) {
+                if (typed.length() > 0 && random.nextInt(4) == 0) {
+                    typed.setLength(typed.length() - 1);
+                    search.deleteLast();
+                } else {
+                    char c = (char) ('A' + random.nextInt(2));
+                    typed.append(c);
+                    search.append(c);
+                }
+                assertEquals(typed.toString(), search.pattern(), "Pattern should follow the typing");
+                assertArrayEquals(KMPAlgorithm.searchAll(text, typed.toString()), search.matches(),
+                        "Refined matches should equal a fresh search for " + typed);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test type-ahead resumes on a growing text")
+    public void testGrowingText() {
+        Random random = new Random(22);
+        for (int round = 0; round < 100; round++) {
+            StringBuilder text = new StringBuilder(randomString(random, 50, 2));
+            TypeAheadSearch search = new TypeAheadSearch(text);
+            StringBuilder typed = new StringBuilder();
+            for (int step = 0; step < 10; step++) {
+                int action = random.nextInt(3);
+                if (action == 0) {
+                    text.append(randomString(random, random.nextInt(5), 2));
+                    search.refresh();
+                } else if (action == 1 && typed.length() > 0) {
+                    typed.setLength(typed.length() - 1);
+                    search.deleteLast();
+                } else {
+                    char c = (char) ('A' + random.nextInt(2));
+                    typed.append(c);
+                    search.append(c);
+                }
+                assertArrayEquals(KMPAlgorithm.searchAll(text.toString(), typed.toString()), search.matches(),
+                        "Matches should cover appended text for " + typed + " in " + text);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test match ending at the scan boundary")
+    public void testBoundary() {
+        StringBuilder text = new StringBuilder("xaa");
+        TypeAheadSearch search = new TypeAheadSearch(text);
+        search.append('a');
+        assertEquals(1, search.append('a'), "aa should be found once");
+        assertEquals(0, search.append('a'), "aaa does not occur yet");
+        text.append('a');
+        assertEquals(1, search.refresh(), "aaa should be found once text grows");
+        assertArrayEquals(new int[]{1}, search.matches(), "Match should start after x");
+        assertEquals(2, search.deleteLast(), "Deleting should rescan the new text for aa");
+    }
+}
@@ -0,0 +1,126 @@
+package kmp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class PatternCacheTest {
+    @Test
+    @DisplayName("Test cache hits and misses")
+    public void testHitsAndMisses() {
+        PatternCache cache = new PatternCache(1 << 20);
+        CompiledPattern first = cache.get("ABAB");
+        CompiledPattern second = cache.get("ABAB");
+        assertSame(first, second, "Second lookup should return the cached pattern");
+        assertEquals(1, cache.hitCount(), "One hit expected");
+        assertEquals(1, cache.missCount(), "One miss expected");
+        assertEquals(4, cache.weightBytes(), "Weight should be the LPS table size, one byte per entry");
+        assertEquals("", cache.get(null).pattern(), "Null pattern should be cached as empty");
+    }
+
+    @Test
+    @DisplayName("Test least recently used entry is evicted")
+    public void testLruEviction() {
+        // a single stripe holding at most three 4-char patterns
+        PatternCache cache = new PatternCache(12, Engine.LPS, 1);
+        CompiledPattern a = cache.get("AAAA");
+        cache.get("BBBB");
+        cache.get("CCCC");
+        cache.get("AAAA");
+        cache.get("DDDD");
+
+        assertEquals(1, cache.evictionCount(), "Adding a fourth pattern should evict one");
+        assertEquals(3, cache.size(), "Cache should stay within its weight limit");
+        assertSame(a, cache.get("AAAA"), "Recently used pattern should survive");
+        long misses = cache.missCount();
+        cache.get("BBBB");
+        assertEquals(misses + 1, cache.missCount(), "Least recently used pattern should have been evicted");
+    }
+
+    @Test
+    @DisplayName("Test oversized pattern is not cached")
+    public void testOversizedPattern() {
+        PatternCache cache = new PatternCache(4, Engine.LPS, 1);
+        assertEquals(0, cache.get("ABCDEFGH").indexOf("ABCDEFGH"), "Oversized pattern should still compile");
+        assertEquals(0, cache.size(), "Oversized pattern should not be cached");
+    }
+
+    @Test
+    @DisplayName("Test budget smaller than the stripe count still caches")
+    public void testSmallBudget() {
+        PatternCache cache = new PatternCache(10);
+        CompiledPattern first = cache.get("ABCD");
+        assertSame(first, cache.get("ABCD"), "Pattern within the budget should be cached");
+        assertEquals(1, cache.size(), "One entry expected");
+        cache.get("EFGH");
+        cache.get("IJKL");
+        assertTrue(cache.weightBytes() <= 10, "Total weight should stay within the budget");
+    }
+
+    @Test
+    @DisplayName("Test static search uses the cache when enabled")
+    public void testStaticSearchUsesCache() {
+        PatternCache cache = new PatternCache(1 << 20);
+        KMPAlgorithm.setPatternCache(cache);
+        try {
+            assertEquals(6, KMPAlgorithm.search("HELLO WORLD", "WORLD"), "Search result should be unchanged");
+            assertArrayEquals(new int[]{0, 2}, KMPAlgorithm.searchAll("ABABA", "ABA"), "searchAll should be unchanged");
+            assertEquals(6, KMPAlgorithm.search("HELLO WORLD", "WORLD"), "Repeated search should be unchanged");
+            assertEquals(1, cache.hitCount(), "Repeated pattern should hit the cache");
+            assertEquals(2, cache.missCount(), "Each distinct pattern should miss once");
+        } finally {
+            KMPAlgorithm.setPatternCache(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Test static byte search uses the cache when enabled")
+    public void testStaticByteSearchUsesCache() {
+        PatternCache cache = new PatternCache(1 << 20);
+        KMPAlgorithm.setPatternCache(cache);
+        try {
+            byte[] text = {'x', (byte) 0xC3, (byte) 0xA9, 'x', (byte) 0xC3, (byte) 0xA9};
+            byte[] pattern = {(byte) 0xC3, (byte) 0xA9};
+            assertEquals(1, KMPAlgorithm.search(text, 0, text.length, pattern), "Byte search result should be unchanged");
+            assertArrayEquals(new int[]{1, 4}, KMPAlgorithm.searchAll(text, 0, text.length, pattern),
+                    "Byte searchAll should be unchanged");
+            assertArrayEquals(new int[]{1, 4}, KMPAlgorithm.searchAll(ByteBuffer.wrap(text), pattern),
+                    "Buffer searchAll should be unchanged");
+            assertEquals(1, cache.missCount(), "Byte pattern should be compiled once");
+            assertEquals(2, cache.hitCount(), "Repeated byte pattern should hit the cache");
+            assertSame(cache.get("\u00C3\u00A9"), cache.get("\u00C3\u00A9"), "Key should be the ISO-8859-1 string");
+            assertEquals(1, cache.size(), "Only the ISO-8859-1 key should be cached");
+        } finally {
+            KMPAlgorithm.setPatternCache(null);
+        }
+    }
+
+    @Test
+    @DisplayName("Test concurrent lookups share one instance")
+    public void testConcurrentLookups() throws Exception {
+        PatternCache cache = new PatternCache(1 << 20);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CompiledPattern>> results = new ArrayList<>();
+            for (int k = 0; k < 200; k++) {
+                final String pattern = "P" + (k % 10);
+                results.add(executor.submit(() -> cache.get(pattern)));
+            }
+            for (Future<CompiledPattern> result : results) {
+                assertSame(cache.get(result.get().pattern()), result.get(), "All threads should share the cached instance");
+            }
+            assertEquals(10, cache.size(), "Only distinct patterns should be cached");
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
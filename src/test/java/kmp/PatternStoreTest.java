@@ -0,0 +1,222 @@
+package kmp;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class PatternStoreTest {
+    private static final String TEXT = "abAB abab ABABABAB 😀x АБА " + "A".repeat(300) + "B ababcabab";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Test patterns survive a round trip")
+    public void testRoundTrip() throws IOException {
+        List<CompiledPattern> patterns = samplePatterns();
+        Path file = dir.resolve("patterns.kmps");
+        PatternStore.write(file, patterns);
+        PatternStore store = PatternStore.open(file);
+
+        assertEquals(patterns.size(), store.size(), "Every pattern should be stored");
+        for (int p = 0; p < patterns.size(); p++) {
+            CompiledPattern expected = patterns.get(p);
+            CompiledPattern loaded = store.get(p);
+            String label = expected.toString();
+            assertEquals(expected.pattern(), loaded.pattern(), "Pattern text should be kept: " + label);
+            assertEquals(expected.options(), loaded.options(), "Options should be kept: " + label);
+            assertEquals(expected.engine(), loaded.engine(), "Resolved engine should be kept: " + label);
+            assertArrayEquals(expected.lps(), loaded.lps(), "Lps table should be kept: " + label);
+            assertEquals(expected.tableBytes(), loaded.tableBytes(), "Table sizes should agree: " + label);
+            assertArrayEquals(expected.findAll(TEXT), loaded.findAll(TEXT), "Matches should agree: " + label);
+            assertEquals(expected.indexOf(TEXT.toCharArray(), 0, TEXT.length()),
+                    loaded.indexOf(TEXT.toCharArray(), 0, TEXT.length()), "char[] search should agree: " + label);
+        }
+    }
+
+    @Test
+    @DisplayName("Test tables are read in place and patterns built lazily")
+    public void testLazyZeroCopy() throws IOException {
+        Path file = dir.resolve("lazy.kmps");
+        PatternStore.write(file, List.of(KMPAlgorithm.compile("ABABCABAB", Engine.AUTOMATON),
+                KMPAlgorithm.compile("A".repeat(300) + "B")));
+        PatternStore store = PatternStore.open(file);
+        CompiledPattern first = store.get(1);
+        assertSame(first, store.get(1), "Repeated access should return the same instance");
+        assertTrue(first.failureTable().isDirect(), "Lps table should be read from the mapping");
+        assertEquals(2, first.failureTable().width(), "Compact width should be kept");
+        assertEquals(10, store.get(0).indexOf("ABABDABACDABABCABAB"), "Mapped automaton should match");
+    }
+
+    @Test
+    @DisplayName("Test loaded patterns can be stored again")
+    public void testRewrite() throws IOException {
+        Path first = dir.resolve("first.kmps");
+        Path second = dir.resolve("second.kmps");
+        PatternStore.write(first, samplePatterns());
+        PatternStore store = PatternStore.open(first);
+        List<CompiledPattern> loaded = new ArrayList<>();
+        for (int p = 0; p < store.size(); p++) {
+            loaded.add(store.get(p));
+        }
+        PatternStore.write(second, loaded);
+        assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second), "Rewriting should be byte-identical");
+    }
+
+    @Test
+    @DisplayName("Test invalid files are rejected")
+    public void testInvalidFiles() throws IOException {
+        Path garbage = dir.resolve("garbage.kmps");
+        Files.write(garbage, "not a pattern store".getBytes());
+        assertThrows(IOException.class, () -> PatternStore.open(garbage), "Wrong magic should fail");
+
+        Path file = dir.resolve("valid.kmps");
+        PatternStore.write(file, List.of(KMPAlgorithm.compile("ABABCABAB", Engine.AUTOMATON)));
+        byte[] bytes = Files.readAllBytes(file);
+
+        byte[] version = bytes.clone();
+        version[4] = 99;
+        Path future = dir.resolve("future.kmps");
+        Files.write(future, version);
+        IOException error = assertThrows(IOException.class, () -> PatternStore.open(future), "Unknown version should fail");
+        assertTrue(error.getMessage().contains("version 99"), "Error should name the version");
+
+        Path truncated = dir.resolve("truncated.kmps");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 100));
+        assertThrows(IOException.class, () -> PatternStore.open(truncated), "Truncated table should fail at open");
+    }
+
+    @Test
+    @DisplayName("Test multi-pattern matchers survive a round trip")
+    public void testMatchers() throws IOException {
+        List<MultiPatternMatcher> matchers = List.of(
+                MultiPatternMatcher.compile(Arrays.asList("he", "she", "his", "hers", null, "", "АБА", "😀")),
+                MultiPatternMatcher.compile(List.of()),
+                MultiPatternMatcher.compile(List.of("A".repeat(300), "AB", "BA")));
+        String text = "ushers his hershe АБАБА 😀😀 " + "A".repeat(400) + "BAB";
+        Path file = dir.resolve("matchers.kmps");
+        PatternStore.write(file, samplePatterns(), matchers);
+        PatternStore store = PatternStore.open(file);
+
+        assertEquals(samplePatterns().size(), store.size(), "Patterns should be numbered on their own");
+        assertEquals(matchers.size(), store.matcherCount(), "Every matcher should be stored");
+        assertEquals("abab", store.get(0).pattern(), "Patterns should still load next to matchers");
+        for (int k = 0; k < matchers.size(); k++) {
+            MultiPatternMatcher expected = matchers.get(k);
+            MultiPatternMatcher loaded = store.getMatcher(k);
+            assertSame(loaded, store.getMatcher(k), "Repeated access should return the same instance");
+            assertEquals(expected.patternCount(), loaded.patternCount(), "Pattern count should be kept");
+            assertEquals(expected.nodeCount(), loaded.nodeCount(), "Trie size should be kept");
+            for (int p = 0; p < expected.patternCount(); p++) {
+                assertEquals(expected.pattern(p), loaded.pattern(p), "Pattern " + p + " should be kept");
+            }
+            assertEquals(matches(expected, text), matches(loaded, text), "Matches should agree for matcher " + k);
+        }
+    }
+
+    @Test
+    @DisplayName("Test version 1 files are still read")
+    public void testVersionOne() throws IOException {
+        Path file = dir.resolve("v1.kmps");
+        PatternStore.write(file, samplePatterns());
+        byte[] bytes = Files.readAllBytes(file);
+        // pattern entries have not changed since version 1
+        bytes[4] = 1;
+        Files.write(file, bytes);
+        PatternStore store = PatternStore.open(file);
+        assertEquals(samplePatterns().size(), store.size(), "Version 1 patterns should load");
+        assertEquals(0, store.matcherCount(), "Version 1 files hold no matchers");
+        assertArrayEquals(samplePatterns().get(0).findAll(TEXT), store.get(0).findAll(TEXT), "Matches should agree");
+    }
+
+    @Test
+    @DisplayName("Test invalid matcher entries are rejected")
+    public void testInvalidMatchers() throws IOException {
+        Path file = dir.resolve("matcher.kmps");
+        PatternStore.write(file, List.of(), List.of(MultiPatternMatcher.compile(List.of("he", "she", "hers"))));
+        byte[] bytes = Files.readAllBytes(file);
+        // the only entry starts right after the 16-byte header and its offset
+        int entry = 24;
+
+        Path truncated = dir.resolve("truncated.kmps");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 16));
+        assertThrows(IOException.class, () -> PatternStore.open(truncated), "Truncated matcher should fail at open");
+
+        byte[] badNodes = bytes.clone();
+        badNodes[entry + 16] = 0;
+        Path corrupt = dir.resolve("nodes.kmps");
+        Files.write(corrupt, badNodes);
+        assertThrows(IOException.class, () -> PatternStore.open(corrupt), "Matcher without a root should fail at open");
+
+        byte[] badLength = bytes.clone();
+        badLength[entry + 28] = 7;
+        Path lengths = dir.resolve("lengths.kmps");
+        Files.write(lengths, badLength);
+        assertThrows(IOException.class, () -> PatternStore.open(lengths), "Pattern lengths should add up");
+
+        // fail[1] is the first int after childStart[n + 1] and childNode[e]; point it past the trie
+        MultiPatternMatcher matcher = MultiPatternMatcher.compile(List.of("he", "she", "hers"));
+        int tables = entry + (28 + 3 * 4 + 2 * (2 + 3 + 4) + 3) / 4 * 4;
+        int fail = tables + (matcher.nodeCount() + 1 + matcher.nodeCount() - 1) * 4 + 4;
+        byte[] badFail = bytes.clone();
+        badFail[fail] = 100;
+        Path links = dir.resolve("links.kmps");
+        Files.write(links, badFail);
+        PatternStore store = PatternStore.open(links);
+        assertThrows(IllegalStateException.class, () -> store.getMatcher(0), "Out-of-range fail link should be rejected");
+    }
+
+    @Test
+    @DisplayName("Test corrupt lps values and automaton targets are rejected")
+    public void testInvalidTables() throws IOException {
+        // one 4-char entry after the 16-byte header and its offset: 28 header bytes, 8 chars,
+        // then the byte-wide lps table at 36 and the automaton at 40
+        int entry = 24;
+        Path lpsFile = dir.resolve("lps.kmps");
+        PatternStore.write(lpsFile, List.of(KMPAlgorithm.compile("ABAB", Engine.LPS)));
+        byte[] badLps = Files.readAllBytes(lpsFile);
+        assertEquals(2, badLps[entry + 36 + 3], "lps[3] of ABAB should be where the test expects it");
+        badLps[entry + 36 + 1] = 5;
+        Files.write(lpsFile, badLps);
+        PatternStore lpsStore = PatternStore.open(lpsFile);
+        assertThrows(IllegalStateException.class, () -> lpsStore.get(0), "lps value past its index should be rejected");
+
+        Path automatonFile = dir.resolve("automaton.kmps");
+        PatternStore.write(automatonFile, List.of(KMPAlgorithm.compile("ABAB", Engine.AUTOMATON)));
+        byte[] badTarget = Files.readAllBytes(automatonFile);
+        badTarget[entry + 40] = 100;
+        Files.write(automatonFile, badTarget);
+        PatternStore automatonStore = PatternStore.open(automatonFile);
+        assertThrows(IllegalStateException.class, () -> automatonStore.get(0),
+                "Automaton target past the pattern length should be rejected");
+    }
+
+    private static List<String> matches(MultiPatternMatcher matcher, String text) {
+        List<String> matches = new ArrayList<>();
+        matcher.findAll(text, (patternId, offset) -> matches.add(patternId + "@" + offset));
+        return matches;
+    }
+
+    private static List<CompiledPattern> samplePatterns() {
+        return List.of(
+                KMPAlgorithm.compile("abab"),
+                KMPAlgorithm.compile(""),
+                KMPAlgorithm.compile("ABAB", Engine.AUTOMATON),
+                KMPAlgorithm.compile("abab", MatchOptions.DEFAULT.withEngine(Engine.AUTOMATON).withCaseFolding(CaseFolding.ASCII)),
+                KMPAlgorithm.compile("аба", MatchOptions.DEFAULT.withCaseFolding(CaseFolding.UNICODE)),
+                KMPAlgorithm.compile("😀", MatchOptions.DEFAULT.withCodePoints(true)),
+                KMPAlgorithm.compile("ababcabab", Engine.HORSPOOL),
+                KMPAlgorithm.compile("AB", Engine.INDEX_OF),
+                KMPAlgorithm.compile("A".repeat(300) + "B", MatchOptions.DEFAULT.withOffHeap(true).withPrefilter(true)));
+    }
+}
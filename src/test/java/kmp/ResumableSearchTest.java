@@ -0,0 +1,153 @@
+package kmp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static kmp.TestStrings.randomString;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class ResumableSearchTest {
+    @Test
+    @DisplayName("Test time-sliced search reports the same matches as findAll")
+    public void testSlicesMatchFindAll() {
+        Random random = new Random(23);
+        String text = randomString(random, 50_000, 2);
+        for (String patternText : new String[]{"A", "ABAB", "AABBA", "BBBBBBBB"}) {
+            CompiledPattern pattern = KMPAlgorithm.compile(patternText);
+            MatchBuffer expected = new MatchBuffer();
+            pattern.findAll(text, expected);
+
+            ResumableSearch search = pattern.resumableSearch(text);
+            MatchBuffer actual = new MatchBuffer();
+            SearchCursor cursor = SearchCursor.START;
+            int slices = 0;
+            while (!cursor.isComplete()) {
+                cursor = search.findAll(cursor, actual, 0, TimeUnit.NANOSECONDS);
+                slices++;
+            }
+            assertArrayEquals(expected.toArray(), actual.toArray(), "Slices should not lose or repeat matches for " + patternText);
+            assertTrue(slices > 1, "A zero timeout should stop after each block");
+            assertEquals(text.length(), cursor.position(), "Complete cursor should be at the text end");
+        }
+    }
+
+    @Test
+    @DisplayName("Test cursor rebuilt from position and state resumes a match in progress")
+    public void testResumeFromSavedCursor() {
+        String text = "X".repeat(ResumableSearch.CHECK_INTERVAL - 2) + "ABCD" + "X".repeat(10);
+        CompiledPattern pattern = KMPAlgorithm.compile("ABCD");
+        SearchCursor first = pattern.resumableSearch(text).findAll(SearchCursor.START, offset -> { }, 0, TimeUnit.NANOSECONDS);
+        assertFalse(first.isComplete(), "Search should stop at the deadline");
+        assertEquals(ResumableSearch.CHECK_INTERVAL, first.position(), "Search should stop after one block");
+        assertEquals(2, first.state(), "State should hold the partial match AB");
+
+        List<Integer> seen = new ArrayList<>();
+        SearchCursor saved = SearchCursor.of(first.position(), first.state());
+        SearchCursor last = pattern.resumableSearch(text).findAll(saved, seen::add);
+        assertEquals(List.of(ResumableSearch.CHECK_INTERVAL - 2), seen, "Match straddling the stop should be found");
+        assertTrue(last.isComplete(), "Search without deadline should run to the end");
+    }
+
+    @Test
+    @DisplayName("Test findNext steps from match to match")
+    public void testFindNext() {
+        ResumableSearch search = KMPAlgorithm.compile("ABA").resumableSearch("ABABABXABA");
+        List<Integer> seen = new ArrayList<>();
+        SearchCursor cursor = SearchCursor.START;
+        while (!cursor.isComplete()) {
+            cursor = search.findNext(cursor, 1, TimeUnit.SECONDS);
+            if (search.matchStart(cursor) >= 0) {
+                seen.add(search.matchStart(cursor));
+            }
+        }
+        assertEquals(List.of(0, 2, 7), seen, "Overlapping matches should be returned one at a time");
+        assertEquals(-1, search.matchStart(SearchCursor.of(3, 1)), "Cursor without a match should report -1");
+    }
+
+    @Test
+    @DisplayName("Test cancel and interrupt stop the search")
+    public void testCancelAndInterrupt() {
+        CompiledPattern pattern = KMPAlgorithm.compile("AB");
+        String text = "AB".repeat(10_000);
+
+        ResumableSearch search = pattern.resumableSearch(text);
+        MatchBuffer matches = new MatchBuffer();
+        SearchCursor cursor = search.findAll(SearchCursor.START, offset -> {
+            matches.onMatch(offset);
+            if (offset == 100) {
+                search.cancel();
+            }
+        });
+        assertTrue(search.isCancelled(), "Search should report cancellation");
+        assertEquals(ResumableSearch.CHECK_INTERVAL, cursor.position(), "Cancel should take effect at the next check");
+        assertEquals(SearchCursor.of(cursor.position(), cursor.state()), search.findAll(cursor, matches),
+                "Cancelled search should not advance");
+
+        Thread.currentThread().interrupt();
+        try {
+            SearchCursor interrupted = pattern.resumableSearch(text).findAll(SearchCursor.START, offset -> { });
+            assertEquals(0, interrupted.position(), "Interrupted thread should not scan");
+            assertTrue(Thread.currentThread().isInterrupted(), "Interrupt status should be kept");
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    @DisplayName("Test invalid cursors are rejected")
+    public void testInvalidCursor() {
+        ResumableSearch search = KMPAlgorithm.compile("ABC").resumableSearch("ABCABC");
+        assertThrows(IllegalArgumentException.class, () -> search.findAll(SearchCursor.of(7, 0), offset -> { }),
+                "Position past the text end should be rejected");
+        assertThrows(IllegalArgumentException.class, () -> search.findAll(SearchCursor.of(5, 4), offset -> { }),
+                "State longer than the pattern should be rejected");
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.of(-1, 0), "Negative position should be rejected");
+        assertTrue(KMPAlgorithm.compile("").resumableSearch("ABC").findAll(SearchCursor.START, offset -> fail("No match expected"))
+                .isComplete(), "Empty pattern should complete without matches");
+    }
+
+    @Test
+    @DisplayName("Test code-point mode across slices that split surrogate pairs")
+    public void testCodePoints() {
+        // U+10400 folds to U+10428; the first pair straddles the first slice boundary
+        String[] pieces = {"a", "A", "\uD801\uDC00", "\uD801\uDC28", "\uD801"};
+        Random random = new Random(29);
+        StringBuilder sb = new StringBuilder("a".repeat(ResumableSearch.CHECK_INTERVAL - 1)).append("\uD801\uDC00");
+        while (sb.length() < 5 * ResumableSearch.CHECK_INTERVAL) {
+            sb.append(pieces[random.nextInt(pieces.length)]);
+        }
+        String text = sb.toString();
+        MatchOptions options = MatchOptions.DEFAULT.withCodePoints(true).withCaseFolding(CaseFolding.UNICODE);
+        for (String patternText : new String[]{"a\uD801\uDC28", "\uD801\uDC00\uD801\uDC00", "\uDC00", "\uD801"}) {
+            CompiledPattern pattern = KMPAlgorithm.compile(patternText, options);
+            int[] expected = pattern.findAll(text);
+            ResumableSearch search = pattern.resumableSearch(text);
+
+            MatchBuffer sliced = new MatchBuffer();
+            SearchCursor cursor = SearchCursor.START;
+            while (!cursor.isComplete()) {
+                cursor = search.findAll(cursor, sliced, 0, TimeUnit.NANOSECONDS);
+            }
+            assertArrayEquals(expected, sliced.toArray(), patternText + " slices should match findAll");
+
+            List<Integer> stepped = new ArrayList<>();
+            cursor = SearchCursor.START;
+            while (!cursor.isComplete()) {
+                cursor = search.findNext(cursor, 0, TimeUnit.NANOSECONDS);
+                if (search.matchStart(cursor) >= 0) {
+                    stepped.add(search.matchStart(cursor));
+                }
+            }
+            assertEquals(Arrays.stream(expected).boxed().collect(Collectors.toList()), stepped,
+                    patternText + " findNext should stop on every match and nothing else");
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package kmp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class SearchMetricsTest {
+    @AfterEach
+    public void disableMetrics() {
+        KMPAlgorithm.setMetrics(null);
+    }
+
+    @Test
+    @DisplayName("Test metrics count calls, chars and matches")
+    public void testCounters() {
+        SearchMetrics metrics = new SearchMetrics();
+        KMPAlgorithm.setMetrics(metrics);
+        assertEquals(6, KMPAlgorithm.search("HELLO WORLD", "WORLD"), "Metered search should still match");
+        assertArrayEquals(new int[]{0, 2, 4}, KMPAlgorithm.searchAll("ABABAB", "AB"), "Metered searchAll should still match");
+        assertEquals(0, KMPAlgorithm.compile("XYZ").count("ABCDEFGH"), "Metered count should still match");
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(3, snapshot.calls(), "Every call should be counted once");
+        assertEquals(11 + 6 + 8, snapshot.charsScanned(), "Scanned chars should cover each text");
+        assertEquals(4, snapshot.matches(), "Matches should be summed");
+        assertTrue(snapshot.maxNanos() >= snapshot.p50Nanos(), "Max latency should bound the median");
+        assertEquals(3, metrics.latency().count(), "Every call should record a latency");
+
+        metrics.reset();
+        assertEquals(0, metrics.snapshot().calls(), "Reset should clear counters");
+        assertEquals(0, metrics.latency().count(), "Reset should clear the histogram");
+    }
+
+    @Test
+    @DisplayName("Test disabled metrics record nothing")
+    public void testDisabled() {
+        SearchMetrics metrics = new SearchMetrics();
+        KMPAlgorithm.setMetrics(metrics);
+        KMPAlgorithm.setMetrics(null);
+        KMPAlgorithm.search("HELLO WORLD", "WORLD");
+        assertEquals(0, metrics.getCalls(), "Uninstalled metrics should not be updated");
+        assertNull(KMPAlgorithm.metrics(), "Metrics should be off");
+    }
+
+    @Test
+    @DisplayName("Test horspool fallback is counted")
+    public void testHorspoolFallback() {
+        SearchMetrics metrics = new SearchMetrics();
+        KMPAlgorithm.setMetrics(metrics);
+        String patternText = "A".repeat(500) + "B" + "A".repeat(499);
+        CompiledPattern pattern = KMPAlgorithm.compile(patternText, Engine.HORSPOOL);
+        assertEquals(100_000, pattern.indexOf("A".repeat(100_000) + patternText), "Should match after fallback");
+        assertEquals(1, metrics.getHorspoolFallbacks(), "Fallback to kmp should be counted");
+        assertTrue(metrics.getFailureLinks() > 0, "The kmp scan after the fallback should count its failure links");
+    }
+
+    @Test
+    @DisplayName("Test failure links are counted")
+    public void testFailureLinks() {
+        SearchMetrics metrics = new SearchMetrics();
+        KMPAlgorithm.setMetrics(metrics);
+        // "AAB" over "AAAAB": the third and fourth A each fall back from state 2 to state 1
+        assertArrayEquals(new int[]{2}, KMPAlgorithm.compile("AAB", Engine.LPS).findAll("AAAAB"), "Should still match");
+        assertEquals(2, metrics.getFailureLinks(), "Each failure link followed should be counted");
+        assertEquals(2, KMPAlgorithm.compile("AAB", Engine.LPS).count("AABAAB"), "Should still count");
+        assertEquals(3, metrics.getFailureLinks(), "The link after a full match should be counted");
+        assertEquals(2, KMPAlgorithm.compile("AAB", Engine.LPS).indexOf("AAAAB"), "Should still find the match");
+        assertEquals(5, metrics.getFailureLinks(), "indexOf should count its failure links");
+
+        KMPAlgorithm.compile("AAB", Engine.AUTOMATON).findAll("AAAAB");
+        assertEquals(5, metrics.getFailureLinks(), "The automaton should follow no failure links");
+        assertEquals(5, metrics.snapshot().failureLinks(), "Snapshot should include failure links");
+    }
+
+    @Test
+    @DisplayName("Test counters are kept per pattern")
+    public void testPerPattern() {
+        SearchMetrics metrics = new SearchMetrics();
+        KMPAlgorithm.setMetrics(metrics);
+        KMPAlgorithm.compile("AAB", Engine.LPS).findAll("AAAAB");
+        KMPAlgorithm.compile("AAB", Engine.LPS).findAll("AAB");
+        KMPAlgorithm.compile("XY", Engine.LPS).indexOf("ABC");
+
+        PatternMetrics aab = metrics.pattern("AAB");
+        assertEquals(2, aab.calls(), "Calls should be counted per pattern text");
+        assertEquals(5 + 3, aab.charsScanned(), "Scanned chars should be counted per pattern");
+        assertEquals(2, aab.matches(), "Matches should be counted per pattern");
+        assertEquals(2, aab.failureLinks(), "Failure links should be counted per pattern");
+        assertEquals(1, metrics.pattern("XY").calls(), "Other patterns should have their own counters");
+        assertNull(metrics.pattern("missing"), "Unsearched pattern should have no counters");
+        assertEquals(Map.of("AAB", 2L, "XY", 1L), metrics.getCallsByPattern(), "Calls should be keyed by pattern");
+
+        metrics.reset();
+        assertTrue(metrics.patterns().isEmpty(), "Reset should drop per-pattern counters");
+        for (int i = 0; i < SearchMetrics.MAX_PATTERNS + 10; i++) {
+            KMPAlgorithm.compile("P" + i).indexOf("P1");
+        }
+        assertEquals(SearchMetrics.MAX_PATTERNS, metrics.patterns().size(), "Registry should stop at MAX_PATTERNS");
+        assertEquals(SearchMetrics.MAX_PATTERNS + 10, metrics.getCalls(), "Untracked patterns should still be totalled");
+    }
+
+    @Test
+    @DisplayName("Test histogram percentiles")
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(99), "Empty histogram should report 0");
+        for (long v = 1; v <= 1000; v++) {
+            histogram.record(v * 1000);
+        }
+        assertEquals(1000, histogram.count(), "All values should be counted");
+        assertEquals(500_000, histogram.percentile(50), 500_000 * 0.04, "Median should be within bucket precision");
+        assertEquals(990_000, histogram.percentile(99), 990_000 * 0.04, "p99 should be within bucket precision");
+        assertEquals(1_000_000, histogram.max(), 1_000_000 * 0.04, "Max should be within bucket precision");
+        histogram.record(-5);
+        assertEquals(0, histogram.percentile(0), "Negative values should be recorded as 0");
+        assertThrows(IllegalArgumentException.class, () -> histogram.percentile(101), "Percentile above 100 should fail");
+    }
+
+    @Test
+    @DisplayName("Test histogram buckets cover the long range")
+    public void testBuckets() {
+        for (long v : new long[]{0, 1, 63, 64, 65, 127, 128, 1_000_003, Long.MAX_VALUE / 3, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucket(v);
+            assertTrue(LatencyHistogram.lowestValue(bucket) <= v && v <= LatencyHistogram.highestValue(bucket),
+                    "Bucket should contain " + v);
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE), "Last bucket should hold the max");
+    }
+
+    @Test
+    @DisplayName("Test metrics exposed over JMX")
+    public void testJmx() throws Exception {
+        SearchMetrics metrics = new SearchMetrics();
+        metrics.register();
+        try {
+            KMPAlgorithm.setMetrics(metrics);
+            KMPAlgorithm.search("ABABAB", "BAB");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(SearchMetrics.OBJECT_NAME);
+            assertEquals(1L, server.getAttribute(name, "Calls"), "Calls should be readable over JMX");
+            assertEquals(1L, server.getAttribute(name, "Matches"), "Matches should be readable over JMX");
+        } finally {
+            metrics.unregister();
+        }
+    }
+}
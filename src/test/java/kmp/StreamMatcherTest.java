@@ -0,0 +1,144 @@
+package kmp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class StreamMatcherTest {
+    @Test
+    @DisplayName("Test match spanning chunk boundary")
+    public void testMatchAcrossChunks() {
+        StreamMatcher matcher = KMPAlgorithm.compile("WORLD").matcher();
+        List<Long> matches = new ArrayList<>();
+        matcher.feed("HELLO WO".toCharArray(), 0, 8, matches::add);
+        matcher.feed("RLD AND WORLD".toCharArray(), 0, 13, matches::add);
+        assertEquals(List.of(6L, 16L), matches, "Offsets should be absolute stream positions");
+        assertEquals(21, matcher.position(), "Position should count all consumed chars");
+    }
+
+    @Test
+    @DisplayName("Test single character chunks match whole-text search")
+    public void testSingleCharChunks() {
+        String text = "ABABDABACDABABCABABABABCABAB";
+        CompiledPattern pattern = KMPAlgorithm.compile("ABABCABAB");
+        StreamMatcher matcher = pattern.matcher();
+        List<Long> matches = new ArrayList<>();
+        for (char c : text.toCharArray()) {
+            matcher.feed(CharBuffer.wrap(new char[]{c}), matches::add);
+        }
+        int[] expected = pattern.findAll(text);
+        assertEquals(expected.length, matches.size(), "Should find every occurrence");
+        for (int k = 0; k < expected.length; k++) {
+            assertEquals(expected[k], matches.get(k).longValue(), "Offsets should match findAll");
+        }
+    }
+
+    @Test
+    @DisplayName("Test byte mode over heap and direct buffers")
+    public void testByteBuffers() {
+        byte[] data = "xxABCxxABC".getBytes(StandardCharsets.US_ASCII);
+        StreamMatcher matcher = KMPAlgorithm.compile("ABC").matcher();
+        List<Long> matches = new ArrayList<>();
+        ByteBuffer direct = ByteBuffer.allocateDirect(6);
+        direct.put(data, 0, 6).flip();
+        matcher.feed(direct, matches::add);
+        matcher.feed(ByteBuffer.wrap(data, 6, 4), matches::add);
+        assertEquals(List.of(2L, 7L), matches, "Should match bytes across heap and direct buffers");
+        assertFalse(direct.hasRemaining(), "Buffer should be fully consumed");
+    }
+
+    @Test
+    @DisplayName("Test compileBytes matches UTF-8 encoded pattern")
+    public void testCompileBytes() throws IOException {
+        byte[] pattern = "été".getBytes(StandardCharsets.UTF_8);
+        byte[] data = "un été chaud".getBytes(StandardCharsets.UTF_8);
+        StreamMatcher matcher = KMPAlgorithm.compileBytes(pattern).matcher();
+        List<Long> matches = new ArrayList<>();
+        long count = matcher.scan(new ByteArrayInputStream(data), matches::add);
+        assertEquals(1, count, "Encoded pattern should be found once");
+        assertEquals(List.of(3L), matches, "Offset should be a byte offset");
+    }
+
+    @Test
+    @DisplayName("Test reader and channel wrappers")
+    public void testReaderAndChannel() throws IOException {
+        String text = "AB".repeat(StreamMatcher.BUFFER_SIZE) + "C";
+        CompiledPattern pattern = KMPAlgorithm.compile("BABC");
+        List<Long> fromReader = new ArrayList<>();
+        assertEquals(1, pattern.matcher().scan(new StringReader(text), fromReader::add), "Reader should find match");
+        assertEquals(List.of((long) text.length() - 4), fromReader, "Match should be at end of text");
+
+        List<Long> fromChannel = new ArrayList<>();
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        pattern.matcher().scan(Channels.newChannel(new ByteArrayInputStream(bytes)), fromChannel::add);
+        assertEquals(fromReader, fromChannel, "Channel should report the same offsets");
+    }
+
+    @Test
+    @DisplayName("Test code-point mode with surrogate pairs split between chunks")
+    public void testCodePoints() throws IOException {
+        // U+10400 folds to U+10428; lone surrogates stay chars of their own
+        String[] pieces = {"a", "A", "\uD801\uDC00", "\uD801\uDC28", "\uD801", "\uDC00"};
+        Random random = new Random(4);
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 2000) {
+            sb.append(pieces[random.nextInt(pieces.length)]);
+        }
+        String text = sb.toString();
+        MatchOptions options = MatchOptions.DEFAULT.withCodePoints(true).withCaseFolding(CaseFolding.UNICODE);
+        for (String patternText : new String[]{"a\uD801\uDC28", "\uD801\uDC00\uD801\uDC00", "\uDC00a", "a\uD801", "\uDC00"}) {
+            CompiledPattern pattern = KMPAlgorithm.compile(patternText, options);
+            List<Long> expected = new ArrayList<>();
+            pattern.findAll(text, offset -> expected.add((long) offset));
+
+            StreamMatcher matcher = pattern.matcher();
+            List<Long> chunked = new ArrayList<>();
+            for (int from = 0; from < text.length(); ) {
+                int to = Math.min(text.length(), from + 1 + random.nextInt(7));
+                // alternates the array path with the buffer path of a read-only wrapper
+                if (random.nextBoolean()) {
+                    matcher.feed(text.toCharArray(), from, to - from, chunked::add);
+                } else {
+                    matcher.feed(CharBuffer.wrap(text, from, to), chunked::add);
+                }
+                from = to;
+            }
+            matcher.finish(chunked::add);
+            assertEquals(expected, chunked, patternText + " chunks should report the findAll offsets");
+
+            List<Long> read = new ArrayList<>();
+            assertEquals(expected.size(), pattern.matcher().scan(new StringReader(text), read::add),
+                    patternText + " reader count should agree");
+            assertEquals(expected, read, patternText + " reader should finish the last char");
+        }
+    }
+
+    @Test
+    @DisplayName("Test reset and empty pattern")
+    public void testResetAndEmptyPattern() {
+        StreamMatcher matcher = KMPAlgorithm.compile("AB").matcher();
+        matcher.feed("XA".toCharArray(), 0, 2, offset -> fail("No match expected"));
+        assertEquals(1, matcher.state(), "Partial match should be carried over");
+        matcher.reset();
+        assertEquals(0, matcher.state(), "Reset should clear the state");
+        assertEquals(0, matcher.position(), "Reset should clear the position");
+        matcher.feed("B".toCharArray(), 0, 1, offset -> fail("State should not survive reset"));
+
+        StreamMatcher empty = KMPAlgorithm.compile("").matcher();
+        assertEquals(0, empty.feed("ABC".toCharArray(), 0, 3, offset -> fail("Empty pattern never matches")));
+        assertEquals(3, empty.position(), "Position should still advance");
+    }
+}
@@ -0,0 +1,120 @@
+package kmp;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static kmp.TestStrings.randomString;
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class SuffixAutomatonIndexTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Test index queries on a small text")
+    public void testQueries() {
+        SuffixAutomatonIndex index = SuffixAutomatonIndex.build("ABABDABACDABABCABAB");
+        assertEquals(10, index.indexOf("ABABCABAB"), "Pattern should be found at index 10");
+        assertEquals(0, index.indexOf("ABAB"), "First occurrence should be reported");
+        assertEquals(-1, index.indexOf("ABABX"), "Missing pattern should return -1");
+        assertEquals(0, index.indexOf(""), "Empty pattern should be found at 0");
+        assertEquals(3, index.count("ABAB"), "Overlapping occurrences should be counted");
+        assertArrayEquals(new int[]{0, 10, 15}, index.findAll("ABAB"), "All occurrences should be found in order");
+        assertArrayEquals(new int[0], index.findAll("ZZ"), "Missing pattern should have no occurrences");
+        assertEquals(19, index.textLength(), "Text length should be kept");
+    }
+
+    @Test
+    @DisplayName("Test index agrees with KMP on random texts")
+    public void testAgainstKmp() {
+        Random random = new Random(22);
+        for (int round = 0; round < 50; round++) {
+            String text = randomString(random, 2000, 2 + random.nextInt(3));
+            SuffixAutomatonIndex index = SuffixAutomatonIndex.build(text);
+            assertTrue(index.stateCount() <= 2 * text.length(), "At most 2n - 1 states expected");
+            assertTrue(index.transitionCount() <= 3 * text.length(), "At most 3n - 4 transitions expected");
+            for (int q = 0; q < 20; q++) {
+                String pattern = random.nextBoolean()
+                        ? text.substring(random.nextInt(1990)).substring(0, 1 + random.nextInt(10))
+                        : randomString(random, 1 + random.nextInt(8), 3);
+                int[] expected = KMPAlgorithm.searchAll(text, pattern);
+                assertArrayEquals(expected, index.findAll(pattern), "findAll should agree for " + pattern);
+                assertEquals(expected.length, index.count(pattern), "count should agree for " + pattern);
+                assertEquals(KMPAlgorithm.search(text, pattern), index.indexOf(pattern), "indexOf should agree for " + pattern);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test repetitive and non-latin texts")
+    public void testEdgeTexts() {
+        SuffixAutomatonIndex run = SuffixAutomatonIndex.build("A".repeat(1000));
+        assertEquals(1001 - 5, run.count("AAAAA"), "Every window of a run should count");
+        assertEquals(996, run.findAll("AAAAA").length, "Every window of a run should be found");
+        SuffixAutomatonIndex cyrillic = SuffixAutomatonIndex.build("привет мир, привет 😀");
+        assertArrayEquals(new int[]{0, 12}, cyrillic.findAll("привет"), "Chars >= 256 should be indexed");
+        assertEquals(19, cyrillic.indexOf("😀"), "Surrogate pairs should be indexed as two chars");
+        SuffixAutomatonIndex empty = SuffixAutomatonIndex.build(null);
+        assertEquals(-1, empty.indexOf("A"), "Empty index should find nothing");
+        assertEquals(0, empty.count("A"), "Empty index should count nothing");
+    }
+
+    @Test
+    @DisplayName("Test index round-trips through a file")
+    public void testWriteRead() throws IOException {
+        String text = "the quick brown fox jumps over the lazy dog, the end";
+        SuffixAutomatonIndex index = SuffixAutomatonIndex.build(text);
+        Path file = dir.resolve("index.sam");
+        index.write(file);
+        SuffixAutomatonIndex loaded = SuffixAutomatonIndex.read(file);
+        assertArrayEquals(index.findAll("the"), loaded.findAll("the"), "Loaded index should answer the same");
+        assertEquals(index.memoryBytes(), loaded.memoryBytes(), "Loaded index should have the same size");
+        assertEquals(text.length(), loaded.textLength(), "Text length should survive");
+
+        Path garbage = dir.resolve("garbage.sam");
+        Files.write(garbage, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> SuffixAutomatonIndex.read(garbage), "Wrong magic should fail");
+    }
+
+    @Test
+    @DisplayName("Test damaged index tables are rejected on read")
+    public void testInvalidTables() throws IOException {
+        SuffixAutomatonIndex index = SuffixAutomatonIndex.build("abracadabra");
+        Path file = dir.resolve("valid.sam");
+        index.write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        int states = index.stateCount();
+        int transitions = index.transitionCount();
+        // big-endian header of five ints, then the arrays in write order
+        int edgeTargets = 20 + (states + 1) * 4 + transitions * 2;
+        int firstEnd = edgeTargets + transitions * 4;
+        int counts = firstEnd + states * 4;
+        int children = counts + states * 4 + (states + 1) * 4;
+
+        assertCorrupt(bytes, edgeTargets, states, "Edge target past the last state");
+        assertCorrupt(bytes, edgeTargets, 0, "Edge back to the root");
+        assertCorrupt(bytes, firstEnd + 4, 11, "End position past the text");
+        assertCorrupt(bytes, counts + 4, 1000, "Count that disagrees with the suffix-link tree");
+        assertCorrupt(bytes, children, -1, "Negative child");
+        assertCorrupt(bytes, children, bytes.length, "Child past the last state");
+        // the second child entry repeats the first, so one state is never reached
+        int first = ByteBuffer.wrap(bytes).getInt(children);
+        assertCorrupt(bytes, children + 4, first, "Child listed twice");
+    }
+
+    private void assertCorrupt(byte[] valid, int offset, int value, String damage) throws IOException {
+        byte[] bytes = valid.clone();
+        ByteBuffer.wrap(bytes).putInt(offset, value);
+        Path file = dir.resolve("damaged.sam");
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> SuffixAutomatonIndex.read(file), damage + " should be rejected");
+    }
+}
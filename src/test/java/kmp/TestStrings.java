@@ -0,0 +1,50 @@
+package kmp;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Random inputs and reference checks shared by the randomized tests.
+ */
+final class TestStrings {
+    private TestStrings() {
+    }
+
+    @FunctionalInterface
+    interface RandomCase {
+        void check(String text, String pattern, Random random);
+    }
+
+    // a string over the first alphabet letters starting at 'A'
+    static String randomString(Random random, int length, int alphabet) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('A' + random.nextInt(alphabet)));
+        }
+        return sb.toString();
+    }
+
+    // runs the check on rounds random texts and patterns of 1 to maxPatternLength chars.
+    // alphabets of 2 to 4 letters make patterns recur and overlap, where engines tend to differ
+    static void forRandomCases(long seed, int rounds, int textLength, int maxPatternLength, RandomCase check) {
+        Random random = new Random(seed);
+        for (int round = 0; round < rounds; round++) {
+            String text = randomString(random, textLength, 2 + random.nextInt(3));
+            String pattern = randomString(random, 1 + random.nextInt(maxPatternLength), 2 + random.nextInt(3));
+            check.check(text, pattern, random);
+        }
+    }
+
+    // the plain lps engine on the heap is the reference every other search path is compared with.
+    // only options that change what matches, like case folding, are carried over
+    static void assertMatchesLps(CompiledPattern pattern, String text, int from) {
+        MatchOptions plain = pattern.options().withEngine(Engine.LPS).withOffHeap(false).withPrefilter(false);
+        CompiledPattern reference = KMPAlgorithm.compile(pattern.pattern(), plain);
+        int[] expected = reference.findAll(text);
+        String label = pattern.engine() + " on " + pattern.pattern();
+        assertArrayEquals(expected, pattern.findAll(text), label + " should report the same matches");
+        assertEquals(expected.length, pattern.count(text), label + " count should agree");
+        assertEquals(reference.indexOf(text, from), pattern.indexOf(text, from), label + " indexOf should agree");
+    }
+}
@@ -0,0 +1,92 @@
+package kmp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class WildcardPatternTest {
+    @Test
+    @DisplayName("Test single-character wildcard")
+    public void testWildcard() {
+        WildcardPattern pattern = KMPAlgorithm.compileWildcard("ERR?R");
+        assertEquals(4, pattern.indexOf("log ERROR here"), "Wildcard should match any char");
+        assertArrayEquals(new int[]{0, 6}, pattern.findAll("ERRORxERR0R"), "Should find all matches");
+        assertFalse(pattern.isLiteral(), "Wildcard pattern should not be literal");
+    }
+
+    @Test
+    @DisplayName("Test character classes")
+    public void testCharacterClasses() {
+        WildcardPattern pattern = KMPAlgorithm.compileWildcard("user[0-9]@");
+        assertArrayEquals(new int[]{0, 13}, pattern.findAll("user1@a.com, user9@b.com, userx@c.com"),
+                "Digit class should match only digits");
+        assertEquals(2, KMPAlgorithm.compileWildcard("[^a-z]b").indexOf("abXb"), "Negated class should exclude range");
+        assertEquals(1, KMPAlgorithm.compileWildcard("[xyz]").indexOf("ay"), "List class should match members");
+    }
+
+    @Test
+    @DisplayName("Test escapes and literal patterns")
+    public void testEscapesAndLiterals() {
+        WildcardPattern pattern = KMPAlgorithm.compileWildcard("a\\?b\\[");
+        assertTrue(pattern.isLiteral(), "Escaped pattern should use the KMP engine");
+        assertEquals(4, pattern.indexOf("axb a?b["), "Escaped chars should match literally");
+        assertEquals(1, KMPAlgorithm.compileWildcard("[\\]\\-]").indexOf("a-"), "Escapes should work inside classes");
+        assertEquals(5, pattern.indexOf(new StringBuilder("a?b[ a?b["), 1), "fromIndex should apply to CharSequence");
+    }
+
+    @Test
+    @DisplayName("Test invalid patterns are rejected")
+    public void testInvalidPatterns() {
+        assertThrows(IllegalArgumentException.class, () -> WildcardPattern.compile("[abc"), "Unclosed class");
+        assertThrows(IllegalArgumentException.class, () -> WildcardPattern.compile("abc\\"), "Dangling escape");
+        assertThrows(IllegalArgumentException.class, () -> WildcardPattern.compile("[z-a]"), "Reversed range");
+        assertThrows(IllegalArgumentException.class, () -> WildcardPattern.compile("[]"), "Empty class");
+    }
+
+    @Test
+    @DisplayName("Test chars outside Latin-1 and long patterns")
+    public void testHighCharsAndLongPatterns() {
+        assertEquals(1, KMPAlgorithm.compileWildcard("?Б").indexOf("xАБ"), "Wildcard should match Cyrillic");
+        assertEquals(0, KMPAlgorithm.compileWildcard("[Ѐ-ӿ]b").indexOf("Аb"), "Range above 255 should match");
+
+        String text = "x".repeat(50) + "A".repeat(100) + "B" + "x".repeat(50);
+        WildcardPattern longPattern = KMPAlgorithm.compileWildcard("A".repeat(99) + "?B");
+        assertEquals(50, longPattern.indexOf(text), "Multi-word state should carry between words");
+        assertEquals(1, longPattern.count(text), "Long pattern should match once");
+    }
+
+    @Test
+    @DisplayName("Test agreement with java.util.regex")
+    public void testAgreesWithRegex() {
+        Random random = new Random(5);
+        String[] elements = {"a", "b", "?", "[ab]", "[^a]", "[b-c]"};
+        for (int round = 0; round < 300; round++) {
+            StringBuilder wildcard = new StringBuilder();
+            StringBuilder regex = new StringBuilder();
+            int length = 1 + random.nextInt(round < 250 ? 6 : 80);
+            for (int k = 0; k < length; k++) {
+                String element = elements[random.nextInt(elements.length)];
+                wildcard.append(element);
+                regex.append(element.equals("?") ? "." : element);
+            }
+            StringBuilder text = new StringBuilder();
+            for (int k = 0; k < 300; k++) {
+                text.append("abc".charAt(random.nextInt(3)));
+            }
+
+            Matcher matcher = Pattern.compile("(?=(" + regex + "))", Pattern.DOTALL).matcher(text);
+            MatchBuffer expected = new MatchBuffer();
+            while (matcher.find()) {
+                expected.onMatch(matcher.start());
+            }
+            assertArrayEquals(expected.toArray(), WildcardPattern.compile(wildcard.toString()).findAll(text),
+                    "Should agree with regex for " + wildcard);
+        }
+    }
+}